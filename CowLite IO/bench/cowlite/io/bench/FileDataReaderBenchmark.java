@@ -0,0 +1,103 @@
+/*
+ * Copyright (C) 2018 Wessel Jelle Jongkind.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package cowlite.io.bench;
+
+import cowlite.io.common.FileDataReader;
+import cowlite.io.util.Match;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks for reading and searching files with {@code FileDataReader}.
+ *
+ * @version 2026-10-19 (yyyy-mm-dd)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FileDataReaderBenchmark
+{
+    @Param({"100", "10000"})
+    public int lines;
+    
+    @Param({"16", "256"})
+    public int lineLength;
+    
+    private Path dir;
+    private String path;
+    private FileDataReader reader;
+    
+    @Setup
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("cowlite-bench");
+        path = Fixtures.textFile(dir.resolve("data.txt"), lines, lineLength).toString();
+        reader = new FileDataReader();
+        reader.setPath(path);
+    }
+    
+    @TearDown
+    public void tearDown() throws IOException {
+        Fixtures.delete(dir);
+    }
+    
+    @Benchmark
+    public FileDataReader setPath() throws IOException {
+        FileDataReader r = new FileDataReader();
+        r.setPath(path);
+        return r;
+    }
+    
+    @Benchmark
+    public String getDataString() {
+        return reader.getDataString();
+    }
+    
+    @Benchmark
+    public List<Match> getRegexMatchesSingleLine() {
+        return reader.getRegexMatches("brown fox", false);
+    }
+    
+    @Benchmark
+    public List<Match> getRegexMatchesMultiline() {
+        return reader.getRegexMatches("brown fox", true);
+    }
+    
+    @Benchmark
+    public boolean containsMatch() {
+        return reader.containsMatch("lazy dog", false);
+    }
+}
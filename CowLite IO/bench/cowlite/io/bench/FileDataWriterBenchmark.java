@@ -0,0 +1,142 @@
+/*
+ * Copyright (C) 2018 Wessel Jelle Jongkind.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package cowlite.io.bench;
+
+import cowlite.io.common.FileDataWriter;
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks for writing files with {@code FileDataWriter}, compared to the 
+ * {@code BufferedWriter} and {@code BufferedOutputStream} loops that it replaces.
+ * Every invocation writes the whole file again.
+ *
+ * @version 2026-10-19 (yyyy-mm-dd)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FileDataWriterBenchmark
+{
+    @Param({"1000", "100000"})
+    public int lines;
+    
+    @Param({"16", "256"})
+    public int lineLength;
+    
+    private Path dir;
+    private File file;
+    private List<String> data;
+    private byte[] chunk;
+    
+    @Setup
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("cowlite-bench");
+        data = Files.readAllLines(Fixtures.textFile(dir.resolve("source.txt"), lines, lineLength), StandardCharsets.UTF_8);
+        chunk = new byte[lineLength + 1];
+        file = dir.resolve("out.txt").toFile();
+    }
+    
+    @TearDown
+    public void tearDown() throws IOException {
+        Fixtures.delete(dir);
+    }
+    
+    @Benchmark
+    public long writeLinesBufferedWriter() throws IOException {
+        try(BufferedWriter out = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8)) {
+            for(String line : data) {
+                out.write(line);
+                out.newLine();
+            }
+        }
+        return file.length();
+    }
+    
+    @Benchmark
+    public long writeLinesFileDataWriter() throws IOException {
+        try(FileDataWriter out = new FileDataWriter(file)) {
+            out.writeLines(data);
+        }
+        return file.length();
+    }
+    
+    @Benchmark
+    public long writeRecordsFileDataWriter() throws IOException {
+        try(FileDataWriter out = new FileDataWriter(file)) {
+            for(int i = 0; i < data.size(); i++) {
+                out.writeRecord(',', i, data.get(i));
+            }
+        }
+        return file.length();
+    }
+    
+    @Benchmark
+    public long writeBytesBufferedOutputStream() throws IOException {
+        try(OutputStream out = new BufferedOutputStream(new FileOutputStream(file))) {
+            for(int i = 0; i < lines; i++) {
+                out.write(chunk);
+            }
+        }
+        return file.length();
+    }
+    
+    @Benchmark
+    public long writeBytesFileDataWriter() throws IOException {
+        try(FileDataWriter out = new FileDataWriter(file)) {
+            for(int i = 0; i < lines; i++) {
+                out.write(chunk);
+            }
+        }
+        return file.length();
+    }
+    
+    @Benchmark
+    public long replaceFileDataWriter() throws IOException {
+        try(FileDataWriter out = FileDataWriter.replace(file, "UTF-8")) {
+            out.writeLines(data);
+            out.commit();
+        }
+        return file.length();
+    }
+}
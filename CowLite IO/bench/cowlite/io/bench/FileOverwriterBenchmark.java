@@ -0,0 +1,97 @@
+/*
+ * Copyright (C) 2018 Wessel Jelle Jongkind.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package cowlite.io.bench;
+
+import cowlite.io.common.FileOverwriter;
+import cowlite.io.common.WipeResult;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks for overwriting files with {@code FileOverwriter}. The file is not
+ * deleted, so every invocation overwrites the same file again. Overwriting writes
+ * whole blocks, so the file is cut back to {@link #fileSize} before every invocation.
+ *
+ * @version 2026-10-19 (yyyy-mm-dd)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FileOverwriterBenchmark
+{
+    @Param({"4096", "1048576"})
+    public int fileSize;
+    
+    @Param({"512", "65536"})
+    public int blockSize;
+    
+    private Path dir;
+    private File file;
+    private FileOverwriter overwriter;
+    
+    @Setup
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("cowlite-bench");
+        file = Fixtures.binaryFile(dir.resolve("wipe.bin"), fileSize).toFile();
+        overwriter = new FileOverwriter(blockSize);
+    }
+    
+    @Setup(Level.Invocation)
+    public void resetSize() throws IOException {
+        try(RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(fileSize);
+        }
+    }
+    
+    @TearDown
+    public void tearDown() throws IOException {
+        Fixtures.delete(dir);
+    }
+    
+    @Benchmark
+    public boolean overwriteFile() throws IOException {
+        return overwriter.overwriteFile(file, false);
+    }
+    
+    @Benchmark
+    public WipeResult overwriteFileAsync() throws InterruptedException, ExecutionException {
+        return overwriter.overwriteFileAsync(file, false).get();
+    }
+}
@@ -0,0 +1,146 @@
+/*
+ * Copyright (C) 2018 Wessel Jelle Jongkind.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package cowlite.io.bench;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Random;
+
+/**
+ * Generates the files and directory trees that the benchmarks run against. All
+ * fixtures are generated from a fixed seed, so that every run of a benchmark
+ * reads exactly the same data.
+ *
+ * @version 2026-10-19 (yyyy-mm-dd)
+ */
+final class Fixtures
+{
+    /**
+     * Words from which the lines of text fixtures are built. "brown" and "fox"
+     * are included so that the regex benchmarks have matches on a fraction of the
+     * lines, some of which span two lines.
+     */
+    private static final String[] WORDS = {
+        "the", "quick", "brown", "fox", "jumps", "over", "lazy", "dog",
+        "lorem", "ipsum", "dolor", "sit", "amet", "2018", "03", "16"
+    };
+    
+    private static final long SEED = 20180316L;
+    
+    private Fixtures() {
+    }
+    
+    /**
+     * Writes a text file with the given amount of lines, each of which is approximately
+     * {@code lineLength} characters long.
+     * @param file The file to write.
+     * @param lines The amount of lines in the file.
+     * @param lineLength The length of each line in characters.
+     * @return The file that was written.
+     * @throws IOException When the file could not be written.
+     */
+    static Path textFile(Path file, int lines, int lineLength) throws IOException {
+        Random random = new Random(SEED);
+        StringBuilder line = new StringBuilder(lineLength + 16);
+        
+        try(BufferedWriter out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            for(int i = 0; i < lines; i++) {
+                line.setLength(0);
+                while(line.length() < lineLength) {
+                    if(line.length() > 0) {
+                        line.append(' ');
+                    }
+                    line.append(WORDS[random.nextInt(WORDS.length)]);
+                }
+                line.setLength(lineLength);
+                out.write(line.toString());
+                out.newLine();
+            }
+        }
+        return file;
+    }
+    
+    /**
+     * Writes a file of the given size that contains zero bytes only.
+     * @param file The file to write.
+     * @param size The size of the file in bytes.
+     * @return The file that was written.
+     * @throws IOException When the file could not be written.
+     */
+    static Path binaryFile(Path file, int size) throws IOException {
+        Files.write(file, new byte[size]);
+        return file;
+    }
+    
+    /**
+     * Creates a directory tree below {@code root}. Every directory up to the given
+     * depth contains {@code width} subdirectories and {@code files} small files, so
+     * a deep tree is obtained with a large depth and a wide tree with a large width.
+     * @param root The directory in which the tree is created.
+     * @param depth The amount of directory levels below {@code root}.
+     * @param width The amount of subdirectories per directory.
+     * @param files The amount of files per directory.
+     * @return {@code root}.
+     * @throws IOException When the tree could not be created.
+     */
+    static Path tree(Path root, int depth, int width, int files) throws IOException {
+        Files.createDirectories(root);
+        for(int i = 0; i < files; i++) {
+            Files.write(root.resolve("file" + i + ".txt"), ("content of file " + i).getBytes(StandardCharsets.UTF_8));
+        }
+        
+        if(depth > 0) {
+            for(int i = 0; i < width; i++) {
+                tree(root.resolve("dir" + i), depth - 1, width, files);
+            }
+        }
+        return root;
+    }
+    
+    /**
+     * Deletes the given file or directory and everything below it.
+     * @param root The file or directory to delete.
+     * @throws IOException When the fixture could not be deleted.
+     */
+    static void delete(Path root) throws IOException {
+        if(root == null || !Files.exists(root)) {
+            return;
+        }
+        
+        Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                Files.delete(file);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(Path dir, IOException exc) throws IOException {
+                Files.delete(dir);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+}
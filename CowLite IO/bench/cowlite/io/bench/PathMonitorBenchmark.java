@@ -0,0 +1,106 @@
+/*
+ * Copyright (C) 2018 Wessel Jelle Jongkind.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package cowlite.io.bench;
+
+import cowlite.io.common.PathMonitor;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks for scanning, comparing and storing directory trees with {@code PathMonitor}.
+ * The "deep" shape has few subdirectories per level but many levels, the "wide" shape
+ * has many subdirectories on few levels.
+ *
+ * @version 2026-10-19 (yyyy-mm-dd)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PathMonitorBenchmark
+{
+    @Param({"deep", "wide"})
+    public String shape;
+    
+    private Path dir;
+    private Path storeFile;
+    private PathMonitor monitor;
+    private PathMonitor other;
+    
+    @Setup
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("cowlite-bench");
+        
+        Path root;
+        if("deep".equals(shape)) {
+            root = Fixtures.tree(dir.resolve("tree"), 8, 2, 4);
+        } else {
+            root = Fixtures.tree(dir.resolve("tree"), 2, 32, 4);
+        }
+        storeFile = dir.resolve("snapshot.txt");
+        
+        monitor = new PathMonitor(root);
+        monitor.update(null, null, null);
+        other = new PathMonitor(root);
+        other.update(null, null, null);
+    }
+    
+    @TearDown
+    public void tearDown() throws IOException {
+        Fixtures.delete(dir);
+    }
+    
+    @Benchmark
+    public List<PathMonitor> update() throws IOException {
+        List<PathMonitor> updated = new ArrayList<>();
+        monitor.update(null, null, updated);
+        return updated;
+    }
+    
+    @Benchmark
+    public List<PathMonitor> compareTo() {
+        List<PathMonitor> missing = new ArrayList<>();
+        List<PathMonitor> garbage = new ArrayList<>();
+        monitor.compareTo(other, missing, garbage);
+        return missing;
+    }
+    
+    @Benchmark
+    public void store() throws IOException {
+        monitor.store(storeFile.toFile());
+    }
+}
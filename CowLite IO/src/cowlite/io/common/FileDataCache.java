@@ -0,0 +1,281 @@
+/* 
+ * Copyright (C) 2018 Wessel Jelle Jongkind.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package cowlite.io.common;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A cache of the parsed contents of files, which can be shared by all {@code FileDataReader}s
+ * in the application. When multiple {@code FileDataReader}s read the same file with
+ * the same charset, the file is only read and decoded once and all readers share
+ * the same, unmodifiable list of lines.
+ * <p>
+ * Every lookup compares the last modified time and size of the file with those
+ * recorded when the file was cached, so a file that has changed is read again
+ * automatically. The cache is bounded by the estimated amount of memory that the
+ * cached lines occupy. When that bound is exceeded, the least recently used files
+ * are evicted.
+ * 
+ * <pre><i>
+ *      // Both readers share the lines of the file
+ *      FileDataReader first = new FileDataReader(FileDataCache.getShared());
+ *      FileDataReader second = new FileDataReader(FileDataCache.getShared());
+ *      first.setPath("config.txt");
+ *      second.setPath("config.txt");
+ * </i></pre>
+ * 
+ * This class is thread-safe.
+ * 
+ * @version 2026-10-19 (yyyy-mm-dd)
+ */
+public class FileDataCache
+{
+    /**
+     * The default maximum amount of memory, in bytes, that the cached lines may occupy.
+     */
+    public static final long DEFAULT_MAX_SIZE = 64L * 1024 * 1024;
+    
+    /**
+     * The estimated amount of memory, in bytes, that a line occupies on top of
+     * its characters (the {@code String} object, its array header and the list slot).
+     */
+    private static final int LINE_OVERHEAD = 48;
+    
+    /**
+     * The cache that is shared by the entire application.
+     */
+    private static final FileDataCache SHARED = new FileDataCache(DEFAULT_MAX_SIZE);
+    
+    /**
+     * The cached files, ordered from least recently to most recently used.
+     */
+    private final LinkedHashMap<Key, Entry> entries;
+    
+    /**
+     * The maximum amount of memory, in bytes, that the cached lines may occupy.
+     */
+    private final long maxSize;
+    
+    /**
+     * The estimated amount of memory, in bytes, that the cached lines occupy.
+     */
+    private long size;
+    
+    /**
+     * Instantiates a new {@code FileDataCache} object.
+     * @param maxSize The maximum amount of memory, in bytes, that the cached lines
+     * may occupy. Files that are larger than this on their own are never cached.
+     * @throws IllegalArgumentException When {@code maxSize} is negative.
+     */
+    public FileDataCache(long maxSize) throws IllegalArgumentException {
+        if(maxSize < 0) {
+            throw new IllegalArgumentException("Size can not be negative.");
+        }
+        
+        this.maxSize = maxSize;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true);
+    }
+    
+    /**
+     * Returns the {@code FileDataCache} that is shared by the entire application.
+     * @return The {@code FileDataCache} that is shared by the entire application.
+     */
+    public static FileDataCache getShared() {
+        return SHARED;
+    }
+    
+    /**
+     * Returns the lines of the given file, decoded with the given charset. If the
+     * file is cached and has not changed since, the cached lines are returned. Otherwise
+     * the file is read and the lines are added to the cache.
+     * 
+     * @param path Path to the file which has to be read.
+     * @param charset The CharSet of the file that is being used (usually UTF-8 or UTF-16).
+     * @return An unmodifiable {@code List} with the lines of the file.
+     * @throws IOException When the file is not accessible.
+     */
+    public List<String> getLines(String path, String charset) throws IOException {
+        File f = new File(path);
+        BasicFileAttributes attributes = Files.readAttributes(f.toPath(), BasicFileAttributes.class);
+        FileTime modified = attributes.lastModifiedTime();
+        Key key = new Key(f.getAbsolutePath(), charset);
+        
+        synchronized(this) {
+            Entry entry = entries.get(key);
+            if(entry != null) {
+                if(entry.modified.equals(modified) && entry.length == attributes.size()) {
+                    return entry.lines;
+                }
+                remove(key);
+            }
+        }
+        
+        // Read outside of the lock, so that other files can be looked up in the meantime.
+        List<String> lines = Collections.unmodifiableList(FileDataReader.readLines(path, charset));
+        long weight = weigh(lines);
+        
+        synchronized(this) {
+            if(weight <= maxSize) {
+                remove(key);
+                entries.put(key, new Entry(lines, modified, attributes.size(), weight));
+                size += weight;
+                evict();
+            }
+        }
+        
+        return lines;
+    }
+    
+    /**
+     * Removes the given file from the cache, for all charsets it was cached with.
+     * @param path Path to the file which has to be removed.
+     */
+    public synchronized void invalidate(String path) {
+        String absolute = new File(path).getAbsolutePath();
+        Iterator<Map.Entry<Key, Entry>> it = entries.entrySet().iterator();
+        while(it.hasNext()) {
+            Map.Entry<Key, Entry> e = it.next();
+            if(e.getKey().path.equals(absolute)) {
+                size -= e.getValue().weight;
+                it.remove();
+            }
+        }
+    }
+    
+    /**
+     * Removes all files from the cache.
+     */
+    public synchronized void clear() {
+        entries.clear();
+        size = 0;
+    }
+    
+    /**
+     * Returns the estimated amount of memory, in bytes, that the cached lines occupy.
+     * @return The estimated amount of memory, in bytes, that the cached lines occupy.
+     */
+    public synchronized long getSize() {
+        return size;
+    }
+    
+    /**
+     * Returns the maximum amount of memory, in bytes, that the cached lines may occupy.
+     * @return The maximum amount of memory, in bytes, that the cached lines may occupy.
+     */
+    public long getMaxSize() {
+        return maxSize;
+    }
+    
+    /**
+     * Removes the entry with the given key, if it exists.
+     */
+    private void remove(Key key) {
+        Entry old = entries.remove(key);
+        if(old != null) {
+            size -= old.weight;
+        }
+    }
+    
+    /**
+     * Evicts the least recently used entries until the cache is within its bounds.
+     */
+    private void evict() {
+        Iterator<Entry> it = entries.values().iterator();
+        while(size > maxSize && it.hasNext()) {
+            size -= it.next().weight;
+            it.remove();
+        }
+    }
+    
+    /**
+     * Estimates the amount of memory, in bytes, that the given lines occupy.
+     */
+    private static long weigh(List<String> lines) {
+        long weight = 0;
+        for(String line : lines) {
+            weight += LINE_OVERHEAD + 2L * line.length();
+        }
+        return weight;
+    }
+    
+    /**
+     * The key under which a file is cached.
+     */
+    private static final class Key {
+        private final String path;
+        private final String charset;
+        
+        private Key(String path, String charset) {
+            this.path = path;
+            this.charset = charset;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if(!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return path.equals(other.path) && charset.equalsIgnoreCase(other.charset);
+        }
+
+        @Override
+        public int hashCode() {
+            return path.hashCode();
+        }
+    }
+    
+    /**
+     * A cached file.
+     */
+    private static final class Entry {
+        private final List<String> lines;
+        
+        /**
+         * The last modified time of the file when it was read.
+         */
+        private final FileTime modified;
+        
+        /**
+         * The size of the file in bytes when it was read.
+         */
+        private final long length;
+        
+        /**
+         * The estimated amount of memory, in bytes, that the lines occupy.
+         */
+        private final long weight;
+        
+        private Entry(List<String> lines, FileTime modified, long length, long weight) {
+            this.lines = lines;
+            this.modified = modified;
+            this.length = length;
+            this.weight = weight;
+        }
+    }
+}
@@ -0,0 +1,216 @@
+/* 
+ * Copyright (C) 2018 Wessel Jelle Jongkind.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package cowlite.io.common;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Loads the contents of many files into {@code FileDataReader}s at the same time.
+ * Loading files one after another makes the total time the sum of the time it
+ * takes to load every file, which adds up quickly on network storage where most
+ * of that time is spent waiting. This class loads them on a fixed amount of 
+ * threads, so the total time approaches that of the slowest file instead.
+ * <p>
+ * To bound the memory that is used, no file is started while the total size of 
+ * the files that are being read exceeds {@link #setMaxBytesInFlight(long)}. The
+ * size on disk is used for this, so compressed files count by their compressed
+ * size. The lines of the loaded files are kept by the returned readers.
+ * 
+ * <h1>Basic usage</h1>
+ * <pre><i>
+ *      FileDataLoader loader = new FileDataLoader();
+ *      loader.setThreads(64);
+ * 
+ *      LoadResult result = loader.load(paths, "UTF-8");
+ *      for(Map.Entry&#60;String, FileDataReader&#62; e : result.getReaders().entrySet()) {
+ *          process(e.getKey(), e.getValue().getDataStringLines());
+ *      }
+ *      result.getFailures().forEach((path, error) -&#62; log(path, error));
+ * </i></pre>
+ * 
+ * @version 2026-10-19 (yyyy-mm-dd)
+ */
+public class FileDataLoader
+{
+    /**
+     * The default amount of threads that load files. Loading is mostly spent 
+     * waiting on storage, so this is independent of the amount of processors.
+     */
+    public static final int DEFAULT_THREADS = 32;
+    
+    /**
+     * The default maximum total size of the files that are read at the same time.
+     */
+    public static final long DEFAULT_MAX_BYTES_IN_FLIGHT = 256L * 1024 * 1024;
+    
+    private int threads = DEFAULT_THREADS;
+    private long maxBytesInFlight = DEFAULT_MAX_BYTES_IN_FLIGHT;
+    private FileDataCache cache;
+    
+    /**
+     * Sets the amount of threads that load files.
+     * @param threads The amount of threads.
+     * @throws IllegalArgumentException When {@code threads} is smaller than 1.
+     */
+    public void setThreads(int threads) throws IllegalArgumentException {
+        if(threads < 1) {
+            throw new IllegalArgumentException("At least one thread is needed.");
+        }
+        this.threads = threads;
+    }
+    
+    /**
+     * Sets the maximum total size of the files that are read at the same time.
+     * A file that is larger than this maximum is only read when no other files are.
+     * @param maxBytesInFlight The maximum total size in bytes.
+     * @throws IllegalArgumentException When {@code maxBytesInFlight} is smaller than 1.
+     */
+    public void setMaxBytesInFlight(long maxBytesInFlight) throws IllegalArgumentException {
+        if(maxBytesInFlight < 1) {
+            throw new IllegalArgumentException("Invalid maximum: " + maxBytesInFlight);
+        }
+        this.maxBytesInFlight = maxBytesInFlight;
+    }
+    
+    /**
+     * Sets the cache through which the readers obtain the lines of their files,
+     * see {@link FileDataReader#FileDataReader(FileDataCache)}.
+     * @param cache The cache, or null if the readers should not use a cache.
+     */
+    public void setCache(FileDataCache cache) {
+        this.cache = cache;
+    }
+    
+    /**
+     * Loads the files at the given paths. Every path is loaded once, even if it
+     * is given more than once. Files that could not be loaded do not stop the 
+     * other files from being loaded, but are reported by {@link LoadResult#getFailures()}.
+     * 
+     * @param paths The paths to the files which have to be read.
+     * @param charset The CharSet of the files (usually UTF-8 or UTF-16).
+     * @return The readers of the files that were loaded and the errors of those that could not be.
+     * @throws UnsupportedEncodingException When the charset is not supported.
+     * @throws InterruptedException When the thread was interrupted while waiting
+     *                              for files to be loaded. The files that are
+     *                              being loaded are abandoned.
+     */
+    public LoadResult load(Collection<String> paths, String charset) throws UnsupportedEncodingException, InterruptedException {
+        LineReader.charset(charset);
+        
+        LinkedHashMap<String, FileDataReader> readers = new LinkedHashMap<>();
+        LinkedHashMap<String, IOException> failures = new LinkedHashMap<>();
+        LinkedHashSet<String> distinct = new LinkedHashSet<>(paths);
+        if(distinct.isEmpty()) {
+            return new LoadResult(readers, failures);
+        }
+        
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(threads, distinct.size()));
+        List<Future<FileDataReader>> futures = new ArrayList<>(distinct.size());
+        Budget budget = new Budget(maxBytesInFlight);
+        FileDataCache cache = this.cache;
+        
+        try {
+            for(String path : distinct) {
+                futures.add(executor.submit(() -> load(path, charset, cache, budget)));
+            }
+            
+            int i = 0;
+            for(String path : distinct) {
+                try {
+                    readers.put(path, futures.get(i++).get());
+                } catch(ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    if(cause instanceof IOException) {
+                        failures.put(path, (IOException) cause);
+                    } else if(cause instanceof UncheckedIOException) {
+                        failures.put(path, ((UncheckedIOException) cause).getCause());
+                    } else {
+                        throw new IllegalStateException(cause);
+                    }
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        
+        return new LoadResult(readers, failures);
+    }
+    
+    /**
+     * Loads a single file. Runs on one of the threads of the load. The size is
+     * looked up on this thread too, since that may take as long as a read on
+     * network storage.
+     */
+    private static FileDataReader load(String path, String charset, FileDataCache cache, Budget budget) throws IOException, InterruptedException {
+        long size = new File(path).length();
+        budget.acquire(size);
+        try {
+            FileDataReader reader = cache == null ? new FileDataReader() : new FileDataReader(cache);
+            reader.setPath(path, charset, true);
+            return reader;
+        } finally {
+            budget.release(size);
+        }
+    }
+    
+    /**
+     * The total size of the files that are being read by a single load.
+     */
+    private static final class Budget {
+        private final long max;
+        private long inFlight;
+        private int running;
+        
+        private Budget(long max) {
+            this.max = max;
+        }
+        
+        /**
+         * Waits until a file of the given size fits within the budget; a single file always fits.
+         */
+        private synchronized void acquire(long size) throws InterruptedException {
+            while(running > 0 && inFlight + size > max) {
+                wait();
+            }
+            inFlight += size;
+            running++;
+        }
+        
+        /**
+         * Returns the size of a file that has been read to the budget.
+         */
+        private synchronized void release(long size) {
+            inFlight -= size;
+            running--;
+            notifyAll();
+        }
+    }
+}
@@ -18,18 +18,35 @@
  */
 package cowlite.io.common;
 
+import cowlite.io.util.IOMetrics;
 import cowlite.io.util.Match;
-import java.io.BufferedReader;
+import cowlite.io.util.MatchVisitor;
+import cowlite.io.util.Metrics;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
-import java.io.InputStreamReader;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
 import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
+import java.util.function.ObjIntConsumer;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * Reading files from a file is something that commonly needs to be done in both 
@@ -85,7 +102,7 @@ import java.util.regex.Pattern;
  * 
  * {@code FileDataReader} also offers some useful tools for searching through
  * files. It does this with the use of regex codes. The main methods for searching
- * through files are {@link #containsMatch(String)} which looks if a match for the
+ * through files are {@link #containsMatch(String, boolean)} which looks if a match for the
  * given regex code is found in the file and {@link #getRegexMatches(String, boolean)} 
  * which obtains all matches in the file for the given regex code. {@link #getRegexMatches(String, boolean)}
  * makes use of the {@code Match} class in which matches are conveniently stored
@@ -124,6 +141,14 @@ import java.util.regex.Pattern;
  * Startline: 5, Endline: 8
  * </i></pre>
  * 
+ * <h2>Compressed files</h2>
+ * 
+ * Gzip files are recognized by their first bytes and decompressed while they are
+ * read, so lines, matches and byte offsets refer to the decompressed contents.
+ * Block-compressed gzip files (BGZF) are decompressed on multiple cores. The 
+ * methods that return the raw bytes of the file, such as {@link #getDataBytes()}
+ * and {@link #mapDataBytes()}, return the bytes as they are stored, see {@link #isCompressed()}.
+ * 
  * @author Wessel Jelle Jongkind
  * @version 2018-03-16 (yyyy-mm-dd)
  */
@@ -135,9 +160,92 @@ public class FileDataReader
     private String path;
     
     /**
-     * The data of the file that is being read.
+     * The charset of the file that is being read.
+     */
+    private String charset;
+    
+    /**
+     * {@code true} if the file that is being read is a gzip file, or null if that
+     * has not been determined yet.
+     */
+    private Boolean compressed;
+    
+    /**
+     * The data of the file that is being read, or null if it has not been loaded yet.
+     */
+    private List<String> data;
+    
+    /**
+     * The maximum amount of characters that a multi-line match may span when the
+     * file is searched without loading it.
+     */
+    private int maxMatchSpan = MultilineScanner.DEFAULT_MAX_SPAN;
+    
+    /**
+     * The minimum amount of lines that is parsed by a single task when columns
+     * are parsed in parallel.
+     */
+    private static final int PARSE_CHUNK_LINES = 4096;
+    
+    /**
+     * The index of the lines of the file that is being read, or null if single-line
+     * searches have to match every line.
+     */
+    private TrigramIndex index;
+    
+    /**
+     * The byte offsets of the lines of the file that is being read, or null if 
+     * they have not been needed yet.
+     */
+    private LineOffsets lineOffsets;
+    
+    /**
+     * The {@code Matcher} of the last regex code that was searched for, which is
+     * reused by the next search for the same regex code. Null while it is in use.
+     */
+    private Matcher idleMatcher;
+    
+    /**
+     * {@code true} if the line list and read buffer are reused for every file,
+     * see {@link #setReuseBuffers(boolean)}.
+     */
+    private boolean reuseBuffers;
+    
+    /**
+     * The list into which the lines of every file are read when buffers are reused.
+     */
+    private ArrayList<String> lineBuffer;
+    
+    /**
+     * The buffer with which files are read when buffers are reused, or null.
+     */
+    private byte[] readBuffer;
+    
+    /**
+     * The cache from which the data is obtained, or null if every file is read
+     * by this {@code FileDataReader} itself.
+     */
+    private final FileDataCache cache;
+    
+    /**
+     * Instantiates a new {@code FileDataReader} object which reads every file
+     * itself.
+     */
+    public FileDataReader() {
+        this(null);
+    }
+    
+    /**
+     * Instantiates a new {@code FileDataReader} object which obtains the contents
+     * of files from the given {@code FileDataCache}. Readers that share a cache
+     * also share the lines of the files they read.
+     * @param cache The cache from which the contents of files are obtained, or 
+     *              null if every file should be read by this {@code FileDataReader} itself.
+     * @see FileDataCache#getShared() 
      */
-    private ArrayList<String> data;
+    public FileDataReader(FileDataCache cache) {
+        this.cache = cache;
+    }
     
     /**
      * Sets the file which has to be read. All content of the file is immediately
@@ -165,28 +273,196 @@ public class FileDataReader
      * @throws IOException When the file is not accessible.
      */
     public void setPath(String path, String charset) throws IOException
+    {
+        setPath(path, charset, true);
+    }
+    
+    /**
+     * Sets the file which has to be read. 
+     * @param f The file which has to be read.
+     * @param charset The CharSet of the file that is being used (usually UTF-8 or UTF-16).
+     * @param load {@code true} if the contents of the file should be loaded immediately.
+     * @throws IOException When the file is not accessible.
+     * @see #setPath(String, String, boolean) 
+     */
+    public void setPath(File f, String charset, boolean load) throws IOException {
+        setPath(f.getAbsolutePath(), charset, load);
+    }
+    
+    /**
+     * Set the path to an existing file which has to be read. If {@code load} is
+     * {@code false}, the contents of the file are not loaded until they are needed.
+     * Methods such as {@link #containsLiteral(String)} then work directly on the 
+     * file, without ever loading it. When the contents of a file that was not loaded
+     * are needed but the file is not accessible anymore, an {@code UncheckedIOException}
+     * is thrown.
+     * @param path Path to the file which has to be read.
+     * @param charset The CharSet of the file that is being used (usually UTF-8 or UTF-16).
+     * @param load {@code true} if the contents of the file should be loaded immediately.
+     * @throws IOException When the file is not accessible.
+     */
+    public void setPath(String path, String charset, boolean load) throws IOException
     {
         this.path = path;
-        readData(charset);
+        this.charset = charset;
+        this.data = null;
+        this.index = null;
+        this.lineOffsets = null;
+        this.compressed = null;
+        
+        if(load) {
+            readData(charset);
+        } else {
+            LineReader.charset(charset);
+        }
     }
     
     /**
-     * Read the content of the file to an {@code ArrayList}. The data is stored
-     * in {@link #data}. 
+     * Read the content of the file to an {@code ArrayList}, or obtain it from
+     * the {@link #cache}. The data is stored in {@link #data}. 
      * @param charset The charset to be used (such as UTF-8).
      * @throws IOException When the file is not accessible.
      */
     private void readData(String charset) throws IOException
     {
-        data = new ArrayList<>();
-        try (FileInputStream is = new FileInputStream(new File(path));
-             InputStreamReader red = new InputStreamReader(is, charset);
-             BufferedReader bufred = new BufferedReader(red)) {
+        if(cache != null) {
+            data = cache.getLines(path, charset);
+        } else if(reuseBuffers) {
+            if(lineBuffer == null) {
+                lineBuffer = new ArrayList<>();
+            }
+            lineBuffer.clear();
+            readBuffer = readLines(path, charset, lineBuffer, readBuffer);
+            data = lineBuffer;
+        } else {
+            data = readLines(path, charset);
+        }
+    }
+    
+    /**
+     * Sets whether this {@code FileDataReader} keeps the list of lines and the 
+     * buffer with which files are read, and reuses them for the next file instead
+     * of allocating new ones. This greatly reduces the garbage that is created
+     * when many small files are read one after another, see {@link FileDataReaderPool}.
+     * <p>
+     * <b>When buffers are reused, the {@code List} returned by {@link #getDataStringLinesView()}
+     * is overwritten by the next file that is read.</b> Buffers are not reused for
+     * files that are obtained from a {@code FileDataCache}.
+     * 
+     * @param reuseBuffers {@code true} if buffers should be reused.
+     */
+    public void setReuseBuffers(boolean reuseBuffers) {
+        this.reuseBuffers = reuseBuffers;
+        if(!reuseBuffers) {
+            lineBuffer = null;
+            readBuffer = null;
+        }
+    }
+    
+    /**
+     * Returns {@code true} if buffers are reused for every file.
+     * @return {@code true} if buffers are reused for every file.
+     * @see #setReuseBuffers(boolean) 
+     */
+    public boolean isReusingBuffers() {
+        return reuseBuffers;
+    }
+    
+    /**
+     * Forgets the file that is being read, so that its contents can be garbage 
+     * collected. Reused buffers are kept, but emptied.
+     */
+    public void clear() {
+        path = null;
+        data = null;
+        index = null;
+        lineOffsets = null;
+        if(lineBuffer != null) {
+            lineBuffer.clear();
+        }
+    }
+    
+    /**
+     * Returns the data of the file that is being read, and loads it first if that
+     * has not been done yet.
+     * @return The data of the file that is being read.
+     * @throws UncheckedIOException When the file is not accessible.
+     */
+    private List<String> lines() throws UncheckedIOException {
+        if(data == null) {
+            try {
+                readData(charset);
+            } catch(IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return data;
+    }
+    
+    /**
+     * Returns {@code true} if the contents of the file that is being read have
+     * been loaded into memory.
+     * @return {@code true} if the contents of the file have been loaded into memory.
+     */
+    public boolean isLoaded() {
+        return data != null;
+    }
+    
+    /**
+     * Reads the content of the file at the given path to an {@code ArrayList}.
+     * Files in UTF-8, US-ASCII or ISO-8859-1 are read through a fast path as long
+     * as they only contain ASCII characters, see {@link LineReader}.
+     * @param path Path to the file which has to be read.
+     * @param charset The charset to be used (such as UTF-8).
+     * @return The lines of the file.
+     * @throws IOException When the file is not accessible.
+     */
+    static List<String> readLines(String path, String charset) throws IOException
+    {
+        List<String> data = new ArrayList<>();
+        readLines(path, charset, data, null);
+        return data;
+    }
+    
+    /**
+     * Reads the content of the file at the given path into the given list.
+     * @param path Path to the file which has to be read.
+     * @param charset The charset to be used (such as UTF-8).
+     * @param data The list to which the lines of the file are added.
+     * @param buffer The buffer with which the file should be read, or null to 
+     *               allocate one that fits the file.
+     * @return The buffer with which the file was read, which may be larger than
+     *         the given one, or null if it can not be reused.
+     * @throws IOException When the file is not accessible.
+     */
+    static byte[] readLines(String path, String charset, List<String> data, byte[] buffer) throws IOException
+    {
+        Metrics metrics = IOMetrics.get();
+        long start = metrics.isEnabled() ? System.nanoTime() : 0;
+        
+        try (FileInputStream is = new FileInputStream(new File(path))) {
+            // The size is read up front, since closing the LineReader closes the stream.
+            long size = is.getChannel().size();
+            
+            // Small files do not need a buffer of the full chunk size.
+            if(buffer == null) {
+                buffer = new byte[(int) Math.max(8, Math.min(LineReader.CHUNK_SIZE, size + 1))];
+            }
+            
+            try(LineReader red = new LineReader(GzipInput.decompress(is), LineReader.charset(charset), buffer)) {
+                String dataline;
+                while((dataline = red.readLine()) != null)
+                    data.add(dataline);
+                buffer = red.getBuffer();
+            }
             
-            String dataline;
-            while((dataline = bufred.readLine()) != null)
-                data.add(dataline);
+            if(metrics.isEnabled()) {
+                metrics.recordTime(IOMetrics.READER_READ_TIME, System.nanoTime() - start);
+                metrics.recordValue(IOMetrics.READER_READ_BYTES, size);
+                metrics.recordValue(IOMetrics.READER_READ_LINES, data.size());
+            }
         }
+        return buffer;
     }
     
     /**
@@ -217,11 +493,16 @@ public class FileDataReader
      */
     public String getDataString()
     {
-        String allData = "";
-        for(String datapart: data)
-            allData = allData + datapart;
+        List<String> lines = lines();
+        int length = 0;
+        for(String datapart: lines)
+            length += datapart.length();
+        
+        StringBuilder allData = new StringBuilder(length);
+        for(String datapart: lines)
+            allData.append(datapart);
         
-        return allData;
+        return allData.toString();
     }
     
     /**
@@ -233,7 +514,20 @@ public class FileDataReader
      */
     public List<String> getDataStringLines()
     {
-       return new ArrayList<>(data); 
+       return new ArrayList<>(lines()); 
+    }
+    
+    /**
+     * Returns an unmodifiable view of the contents of the file that is being read.
+     * Contrary to {@link #getDataStringLines()}, the lines are not copied. When
+     * the file was obtained from a {@code FileDataCache}, the returned {@code List}
+     * is shared with all other readers of the same file.
+     * 
+     * @return An unmodifiable view of the contents of the file that is being read.
+     */
+    public List<String> getDataStringLinesView()
+    {
+        return Collections.unmodifiableList(lines());
     }
     
     /**
@@ -253,7 +547,7 @@ public class FileDataReader
         ArrayList<Double> numeric = new ArrayList<>();
         
         try{
-            for(String datapart: data)
+            for(String datapart: lines())
                 numeric.add(Double.parseDouble(datapart));
         }catch(NumberFormatException e){
             throw new NumberFormatException("Line could not be parsed to double.");
@@ -262,6 +556,128 @@ public class FileDataReader
         return numeric;
     }
     
+    /**
+     * Returns a {@code RecordCursor} which walks through the lines of the file 
+     * that is being read as records of fields separated by the given delimiter,
+     * such as those of a CSV or TSV file. Fields can be quoted with {@code "}. 
+     * The cursor reads the loaded lines directly, so it is only valid until
+     * another path is set.
+     * 
+     * @param delimiter The character that separates fields, such as {@code ','} or {@code '\t'}.
+     * @return A {@code RecordCursor} which is positioned before the first line.
+     * @throws UncheckedIOException When the contents of the file have not been
+     *                              loaded and the file is not accessible.
+     * @see #getRecords(char, char) 
+     */
+    public RecordCursor getRecords(char delimiter) throws UncheckedIOException
+    {
+        return getRecords(delimiter, '"');
+    }
+    
+    /**
+     * Returns a {@code RecordCursor} which walks through the lines of the file 
+     * that is being read as records of fields separated by the given delimiter.
+     * 
+     * @param delimiter The character that separates fields.
+     * @param quote The character with which fields can be quoted.
+     * @return A {@code RecordCursor} which is positioned before the first line.
+     * @throws UncheckedIOException When the contents of the file have not been
+     *                              loaded and the file is not accessible.
+     * @throws IllegalArgumentException When the delimiter equals the quote character.
+     */
+    public RecordCursor getRecords(char delimiter, char quote) throws UncheckedIOException, IllegalArgumentException
+    {
+        List<String> lines = lines();
+        return new RecordCursor(lines, delimiter, quote, 0, lines.size());
+    }
+    
+    /**
+     * Parses the given columns of every line, starting with {@code firstLine},
+     * to {@code double}s. Like {@link #getNumericDataLines()}, but for files with
+     * multiple columns, and without boxing the values. The values are returned per
+     * column, so {@code result[i][j]} holds the value of {@code columns[i]} in 
+     * line {@code firstLine + j}.
+     * <p>
+     * When {@code parallel} is {@code true}, large files are divided into chunks
+     * of lines which are parsed by the common {@code ForkJoinPool}.
+     * 
+     * @param delimiter The character that separates fields.
+     * @param firstLine The number of the first line to parse, for example 1 to skip a header.
+     * @param parallel {@code true} if chunks of lines may be parsed in parallel.
+     * @param columns The indices of the columns to parse, starting with 0.
+     * @return The values of the columns.
+     * @throws UncheckedIOException When the contents of the file have not been
+     *                              loaded and the file is not accessible.
+     * @throws IndexOutOfBoundsException When a line does not have one of the columns.
+     * @throws NumberFormatException When a field could not be parsed to a double.
+     * @see RecordCursor#getDouble(int) 
+     */
+    public double[][] getDoubleColumns(char delimiter, int firstLine, boolean parallel, int... columns) 
+            throws UncheckedIOException, IndexOutOfBoundsException, NumberFormatException
+    {
+        double[][] values = new double[columns.length][Math.max(0, lines().size() - firstLine)];
+        parseColumns(delimiter, firstLine, parallel, columns, (records, row) -> {
+            for(int i = 0; i < columns.length; i++) {
+                values[i][row] = records.getDouble(columns[i]);
+            }
+        });
+        return values;
+    }
+    
+    /**
+     * Parses the given columns of every line, starting with {@code firstLine},
+     * to {@code long}s. The values are returned per column, so {@code result[i][j]}
+     * holds the value of {@code columns[i]} in line {@code firstLine + j}.
+     * 
+     * @param delimiter The character that separates fields.
+     * @param firstLine The number of the first line to parse, for example 1 to skip a header.
+     * @param parallel {@code true} if chunks of lines may be parsed in parallel.
+     * @param columns The indices of the columns to parse, starting with 0.
+     * @return The values of the columns.
+     * @throws UncheckedIOException When the contents of the file have not been
+     *                              loaded and the file is not accessible.
+     * @throws IndexOutOfBoundsException When a line does not have one of the columns.
+     * @throws NumberFormatException When a field could not be parsed to a long.
+     * @see #getDoubleColumns(char, int, boolean, int...) 
+     */
+    public long[][] getLongColumns(char delimiter, int firstLine, boolean parallel, int... columns) 
+            throws UncheckedIOException, IndexOutOfBoundsException, NumberFormatException
+    {
+        long[][] values = new long[columns.length][Math.max(0, lines().size() - firstLine)];
+        parseColumns(delimiter, firstLine, parallel, columns, (records, row) -> {
+            for(int i = 0; i < columns.length; i++) {
+                values[i][row] = records.getLong(columns[i]);
+            }
+        });
+        return values;
+    }
+    
+    /**
+     * Walks through the lines starting with {@code firstLine} with {@code RecordCursor}s 
+     * that only record the given columns, and hands every record to the given
+     * consumer along with its index relative to {@code firstLine}.
+     */
+    private void parseColumns(char delimiter, int firstLine, boolean parallel, int[] columns, ObjIntConsumer<RecordCursor> consumer) {
+        if(firstLine < 0) {
+            throw new IllegalArgumentException("Invalid first line: " + firstLine);
+        }
+        
+        List<String> lines = lines();
+        int count = Math.max(0, lines.size() - firstLine);
+        int chunk = Math.max(PARSE_CHUNK_LINES, count / (ForkJoinPool.getCommonPoolParallelism() * 4) + 1);
+        int chunks = (count + chunk - 1) / chunk;
+        
+        IntStream range = IntStream.range(0, chunks);
+        (parallel ? range.parallel() : range).forEach(c -> {
+            int from = firstLine + c * chunk;
+            RecordCursor records = new RecordCursor(lines, delimiter, '"', from, Math.min(lines.size(), from + chunk));
+            records.setColumns(columns);
+            while(records.next()) {
+                consumer.accept(records, records.getLineNumber() - firstLine);
+            }
+        });
+    }
+    
     /**
      * Returns the content of the file that is being read represented as an array
      * of bytes.
@@ -274,6 +690,139 @@ public class FileDataReader
         return Files.readAllBytes(Paths.get(path));
     }
     
+    /**
+     * Reads the content of the file that is being read into the given buffer,
+     * starting with the first byte of the file. Bytes are read until the buffer
+     * is full or the end of the file has been reached. Contrary to {@link #getDataBytes()},
+     * no array is allocated, and a direct buffer is filled without intermediate copies.
+     * 
+     * @param dst The buffer into which the bytes are read.
+     * @return The amount of bytes that were read, or -1 if the file is empty.
+     * @throws IOException When the file is not accessible.
+     * @see #getDataBytes(ByteBuffer, long) 
+     */
+    public int getDataBytes(ByteBuffer dst) throws IOException
+    {
+        return getDataBytes(dst, 0);
+    }
+    
+    /**
+     * Reads a range of the content of the file that is being read into the given
+     * buffer. The range starts at the given position and is at most as long as 
+     * the space that remains in the buffer, so the limit of the buffer determines
+     * the end of the range. Bytes are read until the buffer is full or the end of
+     * the file has been reached.
+     * 
+     * @param dst The buffer into which the bytes are read.
+     * @param position The offset in the file of the first byte to read.
+     * @return The amount of bytes that were read, or -1 if {@code position} lies
+     *         at or beyond the end of the file.
+     * @throws IOException When the file is not accessible.
+     * @throws IllegalArgumentException When {@code position} is negative.
+     */
+    public int getDataBytes(ByteBuffer dst, long position) throws IOException, IllegalArgumentException
+    {
+        if(position < 0) {
+            throw new IllegalArgumentException("Position can not be negative.");
+        }
+        
+        try(FileChannel channel = FileChannel.open(Paths.get(path), StandardOpenOption.READ)) {
+            int total = 0;
+            while(dst.hasRemaining()) {
+                int n = channel.read(dst, position + total);
+                if(n < 0) {
+                    break;
+                }
+                total += n;
+            }
+            return total == 0 && dst.hasRemaining() ? -1 : total;
+        }
+    }
+    
+    /**
+     * Maps the content of the file that is being read into memory. The returned 
+     * buffer is read-only and reads the file through the page cache of the operating
+     * system, so the content is never copied onto the heap. The mapping stays valid
+     * until the buffer is garbage collected, even if the file is changed or deleted
+     * in the meantime, although the bytes that are seen then are undefined.
+     * 
+     * @return A read-only buffer with the content of the file.
+     * @throws IOException When the file is not accessible or larger than {@code Integer.MAX_VALUE} bytes.
+     * @see #mapDataBytes(long, long) 
+     */
+    public ByteBuffer mapDataBytes() throws IOException
+    {
+        try(FileChannel channel = FileChannel.open(Paths.get(path), StandardOpenOption.READ)) {
+            if(channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("File is too large to be mapped at once: " + path);
+            }
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+    }
+    
+    /**
+     * Maps a range of the content of the file that is being read into memory.
+     * 
+     * @param position The offset in the file at which the range starts.
+     * @param size The length of the range in bytes, at most {@code Integer.MAX_VALUE}.
+     * @return A read-only buffer with the given range of the file.
+     * @throws IOException When the file is not accessible.
+     * @throws IllegalArgumentException When {@code position} or {@code size} is
+     *                                  negative or {@code size} is too large.
+     * @see #mapDataBytes() 
+     */
+    public ByteBuffer mapDataBytes(long position, long size) throws IOException, IllegalArgumentException
+    {
+        try(FileChannel channel = FileChannel.open(Paths.get(path), StandardOpenOption.READ)) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, position, size);
+        }
+    }
+    
+    /**
+     * Transfers a range of the content of the file that is being read to the
+     * given channel, such as a {@code SocketChannel}. Where the operating system
+     * supports it, the bytes go directly from the page cache to the target without
+     * passing through the application at all.
+     * 
+     * @param position The offset in the file at which the range starts.
+     * @param count The maximum amount of bytes to transfer.
+     * @param target The channel to which the bytes are transferred.
+     * @return The amount of bytes that were transferred.
+     * @throws IOException When the file is not accessible or the bytes could not be written.
+     */
+    public long transferDataBytes(long position, long count, WritableByteChannel target) throws IOException
+    {
+        try(FileChannel channel = FileChannel.open(Paths.get(path), StandardOpenOption.READ)) {
+            long remaining = Math.min(channel.size() - position, count);
+            long transferred = 0;
+            while(transferred < remaining) {
+                long n = channel.transferTo(position + transferred, remaining - transferred, target);
+                if(n <= 0) {
+                    break;
+                }
+                transferred += n;
+            }
+            return transferred;
+        }
+    }
+    
+    /**
+     * Returns {@code true} if the file that is being read is a gzip file. Its 
+     * lines are decompressed while they are read, but the methods that return
+     * the raw bytes of the file ({@link #getDataBytes()}, {@link #getDataBytes(ByteBuffer, long)},
+     * {@link #mapDataBytes(long, long)} and {@link #transferDataBytes(long, long, WritableByteChannel)})
+     * return the compressed bytes as they are stored.
+     * @return {@code true} if the file that is being read is a gzip file.
+     * @throws IOException When the file is not accessible.
+     */
+    public boolean isCompressed() throws IOException
+    {
+        if(compressed == null) {
+            compressed = GzipInput.isGzip(path);
+        }
+        return compressed;
+    }
+    
     /**
      * Returns the name of the file that is being read.
      * @return The name of the file that is being read.
@@ -286,6 +835,10 @@ public class FileDataReader
     /**
      * Checks whether there are any matches with the given regex code in the contents
      * of the file. 
+     * <p>
+     * When the contents of the file have not been loaded (see {@link #setPath(String, String, boolean)}),
+     * the file is streamed from disk and reading stops at the first match. Multi-line
+     * matches can then span at most {@link #getMaxMatchSpan()} characters.
      * 
      * @param regex The regex code with which the contents of the file have to be matched.
      * @param multiline {@code true} if the regex matching should be done over multiple
@@ -294,90 +847,502 @@ public class FileDataReader
      */
     public boolean containsMatch(String regex, boolean multiline)
     {
-        if(multiline) {
-            return containsMultilineMatch(regex);
-        } else {
-            return containsMatch(regex);
+        try(MatchSource source = openMatches(regex, multiline)) {
+            return source.next();
+        } catch(IOException e) {
+            throw new UncheckedIOException(e);
         }
     }
     
     /**
-     * Checks whether there are any matches with the given regex code in the contents
-     * of the file. This method matches across multiple lines, so if the last part
-     * of line n and the first part of line n + 1 form a match together, it will
-     * be registered as a match.
+     * Enables the use of a {@link TrigramIndex} for single-line regex searches in
+     * the file that is being read. Such searches then only match the lines that
+     * contain every literal that a match of the regex code requires, which makes
+     * repeated searches in the same file much faster. Multi-line searches still
+     * match the whole file.
+     * <p>
+     * If an index was stored next to the file by an earlier call and the file has
+     * not changed since, that index is used. Otherwise the file is loaded and a new
+     * index is built. The index stays enabled until another path is set.
      * 
-     * @param regex The regex code with which the contents of the file have to be matched.
+     * @param store {@code true} if a newly built index should be stored next to 
+     *              the file (see {@link TrigramIndex#indexFileFor(File)}).
+     * @return The index that is used.
+     * @throws IOException When the file is not accessible or the index could not be stored.
+     */
+    public TrigramIndex enableIndex(boolean store) throws IOException {
+        File f = new File(path);
+        long size = f.length();
+        long modified = f.lastModified();
+        File indexFile = TrigramIndex.indexFileFor(f);
+        
+        List<String> lines;
+        try {
+            lines = lines();
+        } catch(UncheckedIOException e) {
+            throw e.getCause();
+        }
+        
+        TrigramIndex loaded = TrigramIndex.load(indexFile, size, modified);
+        if(loaded == null || loaded.getLineCount() != lines.size()) {
+            loaded = TrigramIndex.build(lines, size, modified);
+            if(store) {
+                loaded.store(indexFile);
+            }
+        }
+        
+        index = loaded;
+        return index;
+    }
+    
+    /**
+     * Stops the use of the {@code TrigramIndex} that was enabled by {@link #enableIndex(boolean)}.
+     * An index that was stored next to the file is kept.
+     */
+    public void disableIndex() {
+        index = null;
+    }
+    
+    /**
+     * Returns the index that is used for single-line regex searches, or null if
+     * no index is used.
+     * @return The index that is used, or null if no index is used.
+     */
+    public TrigramIndex getIndex() {
+        return index;
+    }
+    
+    /**
+     * Sets the maximum amount of characters that a multi-line match may span when
+     * a file that has not been loaded is searched (see {@link #setPath(String, String, boolean)}).
+     * Such files are streamed through a window of about twice this size, so this
+     * bounds the memory that is used. Longer matches may be cut short.
      * 
-     * @return {@code true} if a part of the file matches the given regex code. 
+     * @param maxMatchSpan The maximum amount of characters that a match may span.
+     * @throws IllegalArgumentException When {@code maxMatchSpan} is smaller than 1.
      */
-    private boolean containsMultilineMatch(String regex) {
-        Matcher matcher = Pattern.compile(regex).matcher(getDataString());
-        return matcher.find();
+    public void setMaxMatchSpan(int maxMatchSpan) throws IllegalArgumentException {
+        if(maxMatchSpan < 1 || maxMatchSpan > (Integer.MAX_VALUE - 64) / 2) {
+            throw new IllegalArgumentException("Invalid maximum match span: " + maxMatchSpan);
+        }
+        this.maxMatchSpan = maxMatchSpan;
     }
     
     /**
-     * Checks whether there are any matches with the given regex code in the contents
-     * of the file. This method matches across single lines, so if the last part
-     * of line n and the first part of line n + 1 form a match together, it will
-     * not be registered as a match.
+     * Returns the maximum amount of characters that a multi-line match may span when
+     * a file that has not been loaded is searched.
+     * @return The maximum amount of characters that a multi-line match may span.
+     */
+    public int getMaxMatchSpan() {
+        return maxMatchSpan;
+    }
+    
+    /**
+     * Checks whether the given literal occurs in the contents of the file. The
+     * literal is matched across single lines, like {@link #containsMatch(String, boolean)}
+     * does with {@code multiline} set to {@code false}.
+     * <p>
+     * When the contents of the file have not been loaded (see {@link #setPath(String, String, boolean)})
+     * and the file is in UTF-8, US-ASCII or ISO-8859-1, the literal is searched for
+     * in the bytes of the file without decoding them, and the search stops at the
+     * first occurrence.
      * 
-     * @param regex The regex code with which the contents of the file have to be matched.
+     * @param literal The literal to search for.
+     * @return {@code true} if the literal occurs in the file.
+     * @throws IOException When the file is not accessible.
+     */
+    public boolean containsLiteral(String literal) throws IOException {
+        if(!canScanBytes(literal)) {
+            if(literal.indexOf('\n') >= 0 || literal.indexOf('\r') >= 0) {
+                return false;
+            }
+            for(String line : lines()) {
+                if(line.contains(literal)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        
+        try(InputStream in = GzipInput.open(path)) {
+            return new LiteralScanner(literal, LineReader.charset(charset)).scan(in, null);
+        }
+    }
+    
+    /**
+     * Finds all occurrences of the given literal in the contents of the file. The
+     * result is the same as that of {@link #getRegexMatches(String, boolean)} with
+     * the quoted literal and {@code multiline} set to {@code false}.
+     * <p>
+     * When the contents of the file have not been loaded (see {@link #setPath(String, String, boolean)})
+     * and the file is in UTF-8, US-ASCII or ISO-8859-1, the literal is searched for
+     * in the bytes of the file and only the lines in which it occurs are decoded.
      * 
-     * @return {@code true} if a part of the file matches the given regex code. 
+     * @param literal The literal to search for.
+     * @return A {@code List} of {@code Match} objects which represent the occurrences
+     *         that were found in the file. 
+     * @throws IOException When the file is not accessible.
      */
-    private boolean containsMatch(String regex) {
-        Pattern pattern = Pattern.compile(regex);
-        Matcher matcher;
-        for(int i = 0; i < data.size(); i++)
-        {
-            matcher = pattern.matcher(data.get(i));
-            if(matcher.find())
-                return true;
+    public List<Match> getLiteralMatches(String literal) throws IOException {
+        if(!canScanBytes(literal)) {
+            return getRegexMatches(Pattern.quote(literal), false);
+        }
+        
+        List<Match> matches = new ArrayList<>();
+        try(InputStream in = GzipInput.open(path)) {
+            new LiteralScanner(literal, LineReader.charset(charset)).scan(in, matches);
         }
-        return false;
+        return matches;
+    }
+    
+    /**
+     * Returns {@code true} if the given literal can be searched for in the bytes
+     * of the file, instead of in its loaded contents. Literals with characters
+     * that the charset can not encode are not searched for in the bytes, since
+     * those characters would be replaced by a substitute such as {@code ?}.
+     * @param literal The literal to search for.
+     * @return {@code true} if the bytes of the file can be searched.
+     * @throws IOException When the charset of the file is not supported.
+     */
+    private boolean canScanBytes(String literal) throws IOException {
+        return data == null
+                && !literal.isEmpty()
+                && literal.indexOf('\n') < 0
+                && literal.indexOf('\r') < 0
+                && LineReader.isAsciiCompatible(LineReader.charset(charset))
+                && LineReader.charset(charset).newEncoder().canEncode(literal);
     }
     
     /**
      * Finds  all matches with the given regex code in the contents of the file. 
+     * <p>
+     * When the contents of the file have not been loaded (see {@link #setPath(String, String, boolean)}),
+     * the file is streamed from disk. Multi-line matching then streams the file 
+     * through a bounded window instead of pasting the entire file into one {@code String}.
+     * Matches can then span at most {@link #getMaxMatchSpan()} characters, but files
+     * that are larger than the available memory can be searched.
      * 
      * @param regex The regex code with which the contents of the file have to be matched.
      * @param multiline {@code true} if the regex matching should be done over multiple
      *                  lines, false otherwise.
      * @return A {@code List} of {@code Match} objects which represent the matches
      *         that were found in the file. 
+     * @see #forEachMatch(String, boolean, MatchVisitor) 
+     * @see #streamMatches(String, boolean) 
      */
     public List<Match> getRegexMatches(String regex, boolean multiline)
     {
-        if(multiline) {
-            return multilineMatches(regex);
-        } else {
-            return matches(regex);
-        }
+        return getRegexMatches(regex, multiline, Integer.MAX_VALUE);
     }
     
     /**
-     * Finds all matches with the given regex code in the contents
-     * of the file. This method matches across multiple lines, so if the last part
-     * of line n and the first part of line n + 1 form a match together, it will
-     * be registered as a match.
+     * Finds the first {@code limit} matches with the given regex code in the contents
+     * of the file. The search stops as soon as enough matches have been found.
      * 
      * @param regex The regex code with which the contents of the file have to be matched.
-     * 
+     * @param multiline {@code true} if the regex matching should be done over multiple
+     *                  lines, false otherwise.
+     * @param limit The maximum amount of matches to find.
      * @return A {@code List} of {@code Match} objects which represent the matches
      *         that were found in the file. 
+     * @throws IllegalArgumentException When {@code limit} is negative.
+     * @see #getRegexMatches(String, boolean) 
      */
-    private List<Match> multilineMatches(String regex) {
-        Matcher matcher = Pattern.compile(regex).matcher(getDataString());
+    public List<Match> getRegexMatches(String regex, boolean multiline, int limit) throws IllegalArgumentException
+    {
+        if(limit < 0) {
+            throw new IllegalArgumentException("Limit can not be negative.");
+        }
+        
         List<Match> matches = new ArrayList<>();
-        int[] cumulativeLengths = getCumulativeLengths();
+        if(limit > 0) {
+            forEachMatch(regex, multiline, m -> {
+                matches.add(m);
+                return matches.size() < limit;
+            });
+        }
+        return matches;
+    }
+    
+    /**
+     * Finds the matches with the given regex code in the contents of the file and
+     * hands them to the given visitor as they are found, without collecting them.
+     * The search stops when the visitor returns {@code false}.
+     * 
+     * @param regex The regex code with which the contents of the file have to be matched.
+     * @param multiline {@code true} if the regex matching should be done over multiple
+     *                  lines, false otherwise.
+     * @param visitor The visitor which receives the matches.
+     * @return The amount of matches that were handed to the visitor.
+     * @throws UncheckedIOException When the contents of the file have not been
+     *                              loaded and the file is not accessible.
+     */
+    public long forEachMatch(String regex, boolean multiline, MatchVisitor visitor) throws UncheckedIOException
+    {
+        long visited = 0;
+        try(MatchSource source = openMatches(regex, multiline)) {
+            while(source.next()) {
+                visited++;
+                if(!visitor.visit(source.toMatch())) {
+                    break;
+                }
+            }
+        } catch(IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return visited;
+    }
+    
+    /**
+     * Counts the matches with the given regex code in the contents of the file,
+     * without creating {@code Match} objects for them.
+     * 
+     * @param regex The regex code with which the contents of the file have to be matched.
+     * @param multiline {@code true} if the regex matching should be done over multiple
+     *                  lines, false otherwise.
+     * @return The amount of matches in the file.
+     * @throws UncheckedIOException When the contents of the file have not been
+     *                              loaded and the file is not accessible.
+     */
+    public long countMatches(String regex, boolean multiline) throws UncheckedIOException
+    {
+        long count = 0;
+        try(MatchSource source = openMatches(regex, multiline)) {
+            while(source.next()) {
+                count++;
+            }
+        } catch(IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return count;
+    }
+    
+    /**
+     * Returns a {@code Stream} of the matches with the given regex code in the
+     * contents of the file. The matches are searched for lazily, one at a time as
+     * the {@code Stream} is consumed, so operations such as {@code limit(n)} or
+     * {@code findFirst()} stop the search early. When the contents of the file
+     * have not been loaded, the file stays open until the {@code Stream} is closed:
+     * 
+     * <pre><i>{@code
+     *      try(Stream<Match> matches = reader.streamMatches("brown fox", true)) {
+     *          matches.limit(10).forEach(m -> System.out.println(m.getStartLine()));
+     *      }
+     * }</i></pre>
+     * 
+     * @param regex The regex code with which the contents of the file have to be matched.
+     * @param multiline {@code true} if the regex matching should be done over multiple
+     *                  lines, false otherwise.
+     * @return A sequential {@code Stream} of the matches in the file.
+     * @throws IOException When the contents of the file have not been loaded and
+     *                     the file is not accessible. Errors that occur while the
+     *                     {@code Stream} is consumed are thrown as {@code UncheckedIOException}s.
+     */
+    public Stream<Match> streamMatches(String regex, boolean multiline) throws IOException
+    {
+        MatchSource source = openMatches(regex, multiline);
+        Spliterator<Match> matches = new Spliterators.AbstractSpliterator<Match>(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL) {
+            @Override
+            public boolean tryAdvance(Consumer<? super Match> action) {
+                try {
+                    if(!source.next()) {
+                        return false;
+                    }
+                } catch(IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                action.accept(source.toMatch());
+                return true;
+            }
+        };
+        
+        return StreamSupport.stream(matches, false).onClose(() -> {
+            try {
+                source.close();
+            } catch(IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+    
+    /**
+     * Returns a copy of the given match which also holds the absolute byte offsets
+     * in the file at which the match and its groups start and end (see {@link Match#getStartByte()}).
+     * With these offsets, the surroundings of a match can be read again with a 
+     * single positional read instead of reading the whole file.
+     * <p>
+     * The offsets are computed from an index of the byte offsets at which the lines
+     * of the file start, which is built once per file, and the encoded length of
+     * the part of the line that precedes the match. Groups of which no line is
+     * known, such as groups that did not take part in the match, keep -1 as offsets.
+     * 
+     * @param match A match that was found in the file that is being read.
+     * @return A copy of the match with byte offsets.
+     * @throws IOException When the file is not accessible.
+     * @see #getLineStartByte(int) 
+     */
+    public Match resolveByteOffsets(Match match) throws IOException {
+        return resolveByteOffsets(Collections.singletonList(match)).get(0);
+    }
+    
+    /**
+     * Returns copies of the given matches which also hold the absolute byte offsets
+     * in the file at which the matches and their groups start and end.
+     * 
+     * @param matches Matches that were found in the file that is being read.
+     * @return Copies of the matches with byte offsets, in the same order.
+     * @throws IOException When the file is not accessible.
+     * @see #resolveByteOffsets(Match) 
+     */
+    public List<Match> resolveByteOffsets(List<Match> matches) throws IOException {
+        LineOffsets offsets = lineOffsets();
+        List<Match> resolved = new ArrayList<>(matches.size());
+        
+        // Files that are not loaded are only read at the lines that contain matches.
+        HashMap<Integer, String> lines = new HashMap<>();
+        FileChannel channel = null;
+        try {
+            for(Match match : matches) {
+                long[] starts = new long[match.getGroupCount()];
+                long[] ends = new long[match.getGroupCount()];
+                
+                for(int i = 0; i < starts.length; i++) {
+                    Match.Group g = match.group(i);
+                    if(g.getStartLine() < 0 || g.getMatch() == null) {
+                        starts[i] = -1;
+                        ends[i] = -1;
+                        continue;
+                    }
+                    
+                    if(data == null && channel == null && !isCompressed()) {
+                        channel = FileChannel.open(Paths.get(path), StandardOpenOption.READ);
+                    }
+                    starts[i] = offsets.getByteOffset(g.getStartLine(), line(g.getStartLine(), offsets, channel, lines), g.getStartIndex());
+                    ends[i] = offsets.getByteOffset(g.getEndLine(), line(g.getEndLine(), offsets, channel, lines), g.getEndIndex());
+                }
+                resolved.add(new Match(match, starts, ends));
+            }
+        } finally {
+            if(channel != null) {
+                channel.close();
+            }
+        }
+        return resolved;
+    }
+    
+    /**
+     * Returns the absolute byte offset in the file at which the given line starts.
+     * 
+     * @param line The number of the line, starting with 0.
+     * @return The byte offset at which the line starts.
+     * @throws IOException When the file is not accessible.
+     * @throws IndexOutOfBoundsException When the file does not have the given line.
+     */
+    public long getLineStartByte(int line) throws IOException, IndexOutOfBoundsException {
+        return lineOffsets().getLineStart(line);
+    }
+    
+    /**
+     * Returns the byte offsets of the lines of the file, and builds them first if
+     * that has not been done yet.
+     * @return The byte offsets of the lines of the file.
+     * @throws IOException When the file is not accessible.
+     */
+    private LineOffsets lineOffsets() throws IOException {
+        if(lineOffsets == null) {
+            lineOffsets = LineOffsets.of(path, LineReader.charset(charset));
+        }
+        return lineOffsets;
+    }
+    
+    /**
+     * Returns the contents of the given line, from the loaded data or else by 
+     * reading just that line from the given channel.
+     */
+    private String line(int line, LineOffsets offsets, FileChannel channel, HashMap<Integer, String> read) throws IOException {
+        // Lines of compressed files can not be read at their offset, so the file is loaded.
+        if(data != null || channel == null) {
+            return lines().get(line);
+        }
         
-        // Iterate over all the matches that were found
-        while(matcher.find()) {
-            matches.add(new Match(matcher, cumulativeLengths));
+        String text = read.get(line);
+        if(text == null) {
+            long start = offsets.getLineStart(line);
+            ByteBuffer buf = ByteBuffer.allocate((int) (offsets.getLineEnd(line) - start));
+            while(buf.hasRemaining()) {
+                if(channel.read(buf, start + buf.position()) < 0) {
+                    break;
+                }
+            }
+            buf.flip();
+            text = offsets.getCharset().decode(buf).toString();
+            read.put(line, text);
+        }
+        return text;
+    }
+    
+    /**
+     * Opens a {@code MatchSource} for the given regex code. Files that have been 
+     * loaded are matched in memory, other files are streamed from disk. Single-line
+     * searches only match candidate lines when an index is enabled.
+     * 
+     * @param regex The regex code with which the contents of the file have to be matched.
+     * @param multiline {@code true} if the regex matching should be done over multiple
+     *                  lines, false otherwise.
+     * @return A {@code MatchSource} which produces the matches.
+     * @throws IOException When the file is not accessible.
+     */
+    private MatchSource openMatches(String regex, boolean multiline) throws IOException {
+        Matcher matcher = matcher(regex);
+        return openMatches(regex, multiline, matcher).onClose(() -> release(matcher));
+    }
+    
+    private MatchSource openMatches(String regex, boolean multiline, Matcher matcher) throws IOException {
+        if(data != null) {
+            if(multiline) {
+                return MatchSource.forText(getDataString(), getCumulativeLengths(), matcher);
+            }
+            
+            int[] candidates = index == null ? null : index.candidates(regex);
+            if(candidates != null) {
+                return MatchSource.forLines(data, candidates, matcher);
+            } else {
+                return MatchSource.forLines(data.iterator(), matcher);
+            }
         }
         
-        return matches;
+        LineReader red = new LineReader(GzipInput.open(path), LineReader.charset(charset));
+        if(multiline) {
+            return MatchSource.forWindow(red, matcher, maxMatchSpan);
+        } else {
+            return MatchSource.forLines(red, matcher);
+        }
+    }
+    
+    /**
+     * Returns a {@code Matcher} for the given regex code. The {@code Matcher} of
+     * the previous search is reused if it was for the same regex code and is not
+     * in use anymore, so that searching many files for the same regex code does
+     * not compile it again for every file.
+     * @param regex The regex code.
+     * @return A {@code Matcher} for the given regex code.
+     */
+    private Matcher matcher(String regex) {
+        Matcher matcher = idleMatcher;
+        if(matcher != null && matcher.pattern().pattern().equals(regex)) {
+            idleMatcher = null;
+            return matcher;
+        }
+        return Pattern.compile(regex).matcher("");
+    }
+    
+    /**
+     * Hands a {@code Matcher} back for reuse by the next search, after restoring
+     * its default settings and letting go of the text it matched.
+     * @param matcher The {@code Matcher} that is not in use anymore.
+     */
+    private void release(Matcher matcher) {
+        idleMatcher = matcher.useTransparentBounds(false).useAnchoringBounds(true).reset("");
     }
     
     /**
@@ -388,44 +1353,17 @@ public class FileDataReader
      * in the file that is being read.
      */
     private int[] getCumulativeLengths() {
-        int[] lengths = new int[data.size()];
+        List<String> lines = lines();
+        int[] lengths = new int[lines.size()];
         
-        for(int i = 0; i < data.size(); i++) {
+        for(int i = 0; i < lines.size(); i++) {
             if(i > 0) {
-                lengths[i] = lengths[i - 1] + data.get(i).length();
+                lengths[i] = lengths[i - 1] + lines.get(i).length();
             } else {
-                lengths[i] = data.get(i).length();
+                lengths[i] = lines.get(i).length();
             }
         }
         
         return lengths;
     }
-        
-    /**
-     * Finds all matches with the given regex code in the contents
-     * of the file. This method matches across single lines, so if the last part
-     * of line n and the first part of line n + 1 form a match together, it will
-     * not be registered as a match.
-     * 
-     * @param regex The regex code with which the contents of the file have to be matched.
-     * 
-     * @return A {@code List} of {@code Match} objects which represent the matches
-     *         that were found in the file. 
-     */
-    private List<Match> matches(String regex) {
-        //Prepare the  matcher and matchset
-        Pattern pattern = Pattern.compile(regex);
-        Matcher matcher;
-        List<Match> matches = new ArrayList<>();
-
-        //Iterate over all lines of the file
-        for(int i = 0; i < data.size(); i++)
-        {
-            matcher = pattern.matcher(data.get(i));
-            while(matcher.find()) {
-                matches.add(new Match(matcher, i));
-            }
-        }
-        return matches;
-    }
 }
\ No newline at end of file
@@ -0,0 +1,110 @@
+/* 
+ * Copyright (C) 2018 Wessel Jelle Jongkind.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package cowlite.io.common;
+
+import java.util.ArrayDeque;
+
+/**
+ * A pool of {@code FileDataReader}s that reuse their buffers (see {@link FileDataReader#setReuseBuffers(boolean)}).
+ * Applications that read many small files at a high rate can take a reader from
+ * the pool for every file and hand it back afterwards, so that reading a file 
+ * hardly creates any garbage besides the lines themselves.
+ * 
+ * <pre><i>
+ *      FileDataReaderPool pool = new FileDataReaderPool(16);
+ * 
+ *      FileDataReader reader = pool.acquire();
+ *      try {
+ *          reader.setPath(file);
+ *          process(reader.getRegexMatches("ERROR .*", false));
+ *      } finally {
+ *          pool.release(reader);
+ *      }
+ * </i></pre>
+ * 
+ * A reader must not be used anymore after it has been released, and the lists
+ * it returned without copying them may be overwritten. This class is thread-safe.
+ * 
+ * @version 2026-10-19 (yyyy-mm-dd)
+ */
+public class FileDataReaderPool
+{
+    /**
+     * The readers that are not in use.
+     */
+    private final ArrayDeque<FileDataReader> idle = new ArrayDeque<>();
+    
+    /**
+     * The maximum amount of readers that are kept while they are not in use.
+     */
+    private final int maxIdle;
+    
+    /**
+     * Instantiates a new {@code FileDataReaderPool} object.
+     * @param maxIdle The maximum amount of readers that are kept while they are
+     *                not in use. Readers that are released while the pool is full
+     *                are left to the garbage collector.
+     * @throws IllegalArgumentException When {@code maxIdle} is smaller than 1.
+     */
+    public FileDataReaderPool(int maxIdle) throws IllegalArgumentException {
+        if(maxIdle < 1) {
+            throw new IllegalArgumentException("The pool has to be able to hold at least one reader.");
+        }
+        this.maxIdle = maxIdle;
+    }
+    
+    /**
+     * Takes a reader from the pool, or creates a new one if the pool is empty.
+     * @return A {@code FileDataReader} that reuses its buffers.
+     */
+    public FileDataReader acquire() {
+        FileDataReader reader;
+        synchronized(this) {
+            reader = idle.pollFirst();
+        }
+        
+        if(reader == null) {
+            reader = new FileDataReader();
+            reader.setReuseBuffers(true);
+        }
+        return reader;
+    }
+    
+    /**
+     * Hands a reader back to the pool. The reader forgets the file it was reading.
+     * @param reader A reader that was obtained through {@link #acquire()}.
+     */
+    public void release(FileDataReader reader) {
+        reader.clear();
+        
+        synchronized(this) {
+            if(idle.size() < maxIdle) {
+                idle.offerFirst(reader);
+            }
+        }
+    }
+    
+    /**
+     * Returns the amount of readers that are kept while they are not in use.
+     * @return The amount of readers that are kept while they are not in use.
+     */
+    public synchronized int getIdleCount() {
+        return idle.size();
+    }
+}
@@ -0,0 +1,664 @@
+/* 
+ * Copyright (C) 2018 Wessel Jelle Jongkind.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package cowlite.io.common;
+
+import cowlite.io.util.IOMetrics;
+import cowlite.io.util.Metrics;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * The writing companion of {@link FileDataReader}. Lines, text, bytes and records
+ * are encoded into a small set of large direct buffers that are reused for the 
+ * whole lifetime of the writer. Once all buffers are full, they are handed to 
+ * the {@code FileChannel} in a single gathering write, so that a file is written
+ * with few, large system calls and without copying the data again.
+ * <p>
+ * Written data is made durable with {@link #force()}. When several threads share
+ * a writer, a single force covers everything that was written by all of them up
+ * to that point, so threads that call {@code force()} at the same time share 
+ * the cost of the flush to the storage device (group commit).
+ * <p>
+ * Files can also be replaced atomically with {@link #replace(File, String)}: the
+ * data is written to a temporary file next to the target, which is moved over
+ * the target by {@link #commit()}. Readers of the target either see the old or
+ * the new file, never a partially written one.
+ * 
+ * <pre><i>
+ *      try(FileDataWriter writer = FileDataWriter.replace(new File("report.csv"), "UTF-8")) {
+ *          writer.writeRecord(',', "name", "size");
+ *          for(PathMonitor child : monitor.getChildren().values()) {
+ *              writer.writeRecord(',', child.getName(), child.getTotalBytes());
+ *          }
+ *          writer.commit();
+ *      }
+ * </i></pre>
+ * 
+ * @version 2026-10-19 (yyyy-mm-dd)
+ */
+public class FileDataWriter implements Closeable
+{
+    /**
+     * The default size of each buffer in bytes.
+     */
+    public static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+    
+    /**
+     * The default amount of buffers that are filled before they are written.
+     */
+    public static final int DEFAULT_BUFFER_COUNT = 4;
+    
+    /**
+     * The amount of characters that are encoded at once.
+     */
+    private static final int CHUNK_SIZE = 8192;
+    
+    /**
+     * The file that is written, which is a temporary file when the target is replaced.
+     */
+    private final File file;
+    
+    /**
+     * The file that is replaced by {@link #commit()}, or null.
+     */
+    private final File target;
+    
+    private final FileChannel channel;
+    private final CharsetEncoder encoder;
+    
+    /**
+     * The direct buffers into which the data is encoded, of which {@link #current}
+     * is being filled. The last slot of {@link #gather} is used for large direct
+     * buffers that are written along with the buffers.
+     */
+    private final ByteBuffer[] buffers;
+    private final ByteBuffer[] gather;
+    private int current;
+    
+    /**
+     * Text is collected in {@link #chars} until it is full, and then encoded into 
+     * {@link #staging} at once, because the encoders are considerably faster on
+     * large arrays than on strings and direct buffers. {@link #pending} is the 
+     * amount of characters that have not been encoded yet. After encoding, only 
+     * the high surrogate of a pair that was split between two chunks remains.
+     */
+    private final char[] chars = new char[CHUNK_SIZE];
+    private final CharBuffer charBuffer = CharBuffer.wrap(chars);
+    private final ByteBuffer staging;
+    private int pending;
+    
+    private final StringBuilder record = new StringBuilder();
+    private String lineSeparator = System.lineSeparator();
+    
+    /**
+     * The amount of bytes that have been handed to the channel.
+     */
+    private long written;
+    
+    /**
+     * The amount of bytes that were covered by the last force. Guarded by {@link #forceLock}.
+     */
+    private long forced;
+    private final Object forceLock = new Object();
+    
+    private boolean closed;
+    private boolean committed;
+    
+    /**
+     * Opens a writer that replaces the content of the given file with UTF-8 text.
+     * @param f The file to write.
+     * @throws IOException When the file could not be opened.
+     */
+    public FileDataWriter(File f) throws IOException {
+        this(f, "UTF-8", false);
+    }
+    
+    /**
+     * Opens a writer for the given file.
+     * @param f The file to write.
+     * @param charset The charset in which text is encoded.
+     * @param append {@code true} if data should be appended to the file, 
+     * {@code false} if the content of the file should be replaced.
+     * @throws IOException When the file could not be opened.
+     */
+    public FileDataWriter(File f, String charset, boolean append) throws IOException {
+        this(f, charset, append, DEFAULT_BUFFER_SIZE, DEFAULT_BUFFER_COUNT);
+    }
+    
+    /**
+     * Opens a writer for the given file with buffers of the given size. Data is 
+     * written to the file whenever {@code bufferSize * bufferCount} bytes have
+     * been buffered.
+     * @param f The file to write.
+     * @param charset The charset in which text is encoded.
+     * @param append {@code true} if data should be appended to the file, 
+     * {@code false} if the content of the file should be replaced.
+     * @param bufferSize The size of each buffer in bytes.
+     * @param bufferCount The amount of buffers.
+     * @throws IOException When the file could not be opened.
+     * @throws IllegalArgumentException When {@code bufferSize} or {@code bufferCount} is smaller than 1.
+     */
+    public FileDataWriter(File f, String charset, boolean append, int bufferSize, int bufferCount) throws IOException, IllegalArgumentException {
+        this(f, null, charset, append, bufferSize, bufferCount);
+    }
+    
+    private FileDataWriter(File f, File target, String charset, boolean append, int bufferSize, int bufferCount) throws IOException, IllegalArgumentException {
+        if(bufferSize < 1 || bufferCount < 1) {
+            throw new IllegalArgumentException("Invalid buffers: " + bufferCount + " x " + bufferSize);
+        }
+        
+        this.file = f;
+        this.target = target;
+        this.encoder = Charset.forName(charset).newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        this.staging = ByteBuffer.allocate((int) Math.ceil(CHUNK_SIZE * encoder.maxBytesPerChar()) + 16);
+        
+        this.buffers = new ByteBuffer[bufferCount];
+        for(int i = 0; i < bufferCount; i++) {
+            buffers[i] = ByteBuffer.allocateDirect(bufferSize);
+        }
+        this.gather = new ByteBuffer[bufferCount + 1];
+        
+        this.channel = append 
+                ? FileChannel.open(f.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND)
+                : FileChannel.open(f.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+    }
+    
+    /**
+     * Opens a writer that atomically replaces the given file when {@link #commit()}
+     * is called. Until then, the data is written to a temporary file in the same
+     * directory, which is deleted if the writer is closed without committing.
+     * @param target The file to replace.
+     * @param charset The charset in which text is encoded.
+     * @return The writer.
+     * @throws IOException When the temporary file could not be created.
+     */
+    public static FileDataWriter replace(File target, String charset) throws IOException {
+        File dir = target.getAbsoluteFile().getParentFile();
+        File temp = File.createTempFile("." + target.getName() + ".replace", ".tmp", dir);
+        try {
+            return new FileDataWriter(temp, target, charset, false, DEFAULT_BUFFER_SIZE, DEFAULT_BUFFER_COUNT);
+        } catch(IOException | RuntimeException e) {
+            temp.delete();
+            throw e;
+        }
+    }
+    
+    /**
+     * Sets the separator that is written after every line. By default, this is
+     * the line separator of the system.
+     * @param lineSeparator The line separator.
+     */
+    public synchronized void setLineSeparator(String lineSeparator) {
+        this.lineSeparator = lineSeparator;
+    }
+    
+    /**
+     * Writes the given text.
+     * @param text The text to write.
+     * @return This writer.
+     * @throws IOException When the data could not be written.
+     */
+    public synchronized FileDataWriter write(CharSequence text) throws IOException {
+        ensureOpen();
+        encode(text);
+        return this;
+    }
+    
+    /**
+     * Writes the given text followed by the line separator.
+     * @param line The line to write.
+     * @return This writer.
+     * @throws IOException When the data could not be written.
+     */
+    public synchronized FileDataWriter writeLine(CharSequence line) throws IOException {
+        ensureOpen();
+        encode(line);
+        encode(lineSeparator);
+        return this;
+    }
+    
+    /**
+     * Writes all given lines, each followed by the line separator.
+     * @param lines The lines to write.
+     * @return This writer.
+     * @throws IOException When the data could not be written.
+     */
+    public synchronized FileDataWriter writeLines(Iterable<? extends CharSequence> lines) throws IOException {
+        ensureOpen();
+        for(CharSequence line : lines) {
+            encode(line);
+            encode(lineSeparator);
+        }
+        return this;
+    }
+    
+    /**
+     * Writes a record of delimited fields followed by the line separator. Fields
+     * that contain the delimiter, a double quote or a line break are quoted with
+     * double quotes, in which double quotes are doubled, so that the record can
+     * be read back with {@link FileDataReader#getRecords(char, char)}. Null fields
+     * are written as empty fields.
+     * @param delimiter The delimiter between the fields.
+     * @param fields The fields, which are written with {@code String.valueOf}.
+     * @return This writer.
+     * @throws IOException When the data could not be written.
+     */
+    public synchronized FileDataWriter writeRecord(char delimiter, Object... fields) throws IOException {
+        ensureOpen();
+        record.setLength(0);
+        for(int i = 0; i < fields.length; i++) {
+            if(i > 0) {
+                record.append(delimiter);
+            }
+            if(fields[i] != null) {
+                appendField(fields[i], delimiter);
+            }
+        }
+        record.append(lineSeparator);
+        encode(record);
+        return this;
+    }
+    
+    /**
+     * Appends a single field to {@link #record}, quoted if needed.
+     */
+    private void appendField(Object field, char delimiter) {
+        int start = record.length();
+        if(field instanceof CharSequence) {
+            record.append((CharSequence) field);
+        } else {
+            record.append(field);
+        }
+        
+        boolean quote = false;
+        int quotes = 0;
+        for(int i = start; i < record.length(); i++) {
+            char c = record.charAt(i);
+            if(c == '"') {
+                quotes++;
+                quote = true;
+            } else if(c == delimiter || c == '\n' || c == '\r') {
+                quote = true;
+            }
+        }
+        if(!quote) {
+            return;
+        }
+        
+        String value = record.substring(start);
+        record.setLength(start);
+        record.ensureCapacity(start + value.length() + quotes + 2);
+        record.append('"');
+        for(int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            record.append(c);
+            if(c == '"') {
+                record.append('"');
+            }
+        }
+        record.append('"');
+    }
+    
+    /**
+     * Writes the given bytes.
+     * @param b The bytes to write.
+     * @return This writer.
+     * @throws IOException When the data could not be written.
+     */
+    public FileDataWriter write(byte[] b) throws IOException {
+        return write(b, 0, b.length);
+    }
+    
+    /**
+     * Writes {@code len} bytes of the given array, starting at {@code off}.
+     * @param b The bytes to write.
+     * @param off The index of the first byte to write.
+     * @param len The amount of bytes to write.
+     * @return This writer.
+     * @throws IOException When the data could not be written.
+     */
+    public synchronized FileDataWriter write(byte[] b, int off, int len) throws IOException {
+        ensureOpen();
+        encodePending();
+        put(ByteBuffer.wrap(b, off, len));
+        return this;
+    }
+    
+    /**
+     * Writes the remaining bytes of the given buffer. Direct buffers of at least
+     * the size of a buffer of this writer are not copied, but written along with
+     * the buffered data in the same gathering write.
+     * @param src The bytes to write.
+     * @return This writer.
+     * @throws IOException When the data could not be written.
+     */
+    public synchronized FileDataWriter write(ByteBuffer src) throws IOException {
+        ensureOpen();
+        encodePending();
+        if(src.isDirect() && src.remaining() >= buffers[0].capacity()) {
+            writeBuffers(src);
+        } else {
+            put(src);
+        }
+        return this;
+    }
+    
+    /**
+     * Writes all buffered data to the file. The data is not forced to the storage
+     * device, see {@link #force()}.
+     * @throws IOException When the data could not be written.
+     */
+    public synchronized void flush() throws IOException {
+        ensureOpen();
+        encodePending();
+        writeBuffers(null);
+    }
+    
+    /**
+     * Writes all buffered data to the file and forces it to the storage device. 
+     * If another thread forced the file after the data of this thread was written,
+     * the file is not forced again.
+     * @throws IOException When the data could not be written or forced.
+     */
+    public void force() throws IOException {
+        long needed;
+        synchronized(this) {
+            ensureOpen();
+            encodePending();
+            writeBuffers(null);
+            needed = written;
+        }
+        
+        synchronized(forceLock) {
+            if(forced >= needed) {
+                return;
+            }
+            
+            // Everything that was written until now is covered by this force.
+            long covered;
+            synchronized(this) {
+                covered = written;
+            }
+            
+            Metrics metrics = IOMetrics.get();
+            long start = metrics.isEnabled() ? System.nanoTime() : 0;
+            channel.force(false);
+            if(metrics.isEnabled()) {
+                metrics.recordTime(IOMetrics.WRITER_FORCE_TIME, System.nanoTime() - start);
+            }
+            forced = covered;
+        }
+    }
+    
+    /**
+     * Writes all data, forces it to the storage device and closes the writer.
+     * A writer that was opened with {@link #replace(File, String)} then moves the
+     * temporary file over its target.
+     * @throws IOException When the data could not be written, or the target could
+     * not be replaced. The temporary file is deleted in the latter case.
+     */
+    public synchronized void commit() throws IOException {
+        ensureOpen();
+        finish();
+        writeBuffers(null);
+        channel.force(false);
+        closed = true;
+        channel.close();
+        
+        if(target != null) {
+            try {
+                try {
+                    Files.move(file.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                } catch(AtomicMoveNotSupportedException e) {
+                    Files.move(file.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                }
+            } catch(IOException | RuntimeException e) {
+                // The writer is closed already, so close() would leave the temporary file behind.
+                try {
+                    Files.deleteIfExists(file.toPath());
+                } catch(IOException suppressed) {
+                    e.addSuppressed(suppressed);
+                }
+                throw e;
+            }
+            syncDirectory(target.getAbsoluteFile().getParentFile());
+        }
+        committed = true;
+    }
+    
+    /**
+     * Writes all data and closes the writer. A writer that was opened with 
+     * {@link #replace(File, String)} and was not committed deletes its temporary 
+     * file instead, so the target is left untouched.
+     * @throws IOException When the data could not be written.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if(closed) {
+            return;
+        }
+        closed = true;
+        
+        if(target != null && !committed) {
+            channel.close();
+            Files.deleteIfExists(file.toPath());
+            return;
+        }
+        
+        try {
+            finish();
+            writeBuffers(null);
+        } finally {
+            channel.close();
+        }
+    }
+    
+    /**
+     * Returns the file that is written, or the target that is replaced by {@link #commit()}.
+     * @return The file that is written.
+     */
+    public File getFile() {
+        return target != null ? target : file;
+    }
+    
+    /**
+     * Returns the amount of bytes that have been written, including the bytes
+     * that are still buffered.
+     * @return The amount of bytes that have been written.
+     * @throws IOException When buffered data had to be written and could not be written.
+     */
+    public synchronized long getBytesWritten() throws IOException {
+        encodePending();
+        long buffered = 0;
+        for(int i = 0; i <= current; i++) {
+            buffered += buffers[i].position();
+        }
+        return written + buffered;
+    }
+    
+    private void ensureOpen() throws IOException {
+        if(closed) {
+            throw new IOException("The writer of " + getFile() + " is closed.");
+        }
+    }
+    
+    /**
+     * Collects the given text in {@link #chars}, which is encoded whenever it is full.
+     */
+    private void encode(CharSequence text) throws IOException {
+        int length = text.length();
+        int from = 0;
+        while(from < length) {
+            if(pending == chars.length) {
+                encodeChars(false);
+            }
+            
+            int n = Math.min(chars.length - pending, length - from);
+            if(text instanceof String) {
+                ((String) text).getChars(from, from + n, chars, pending);
+            } else if(text instanceof StringBuilder) {
+                ((StringBuilder) text).getChars(from, from + n, chars, pending);
+            } else {
+                for(int i = 0; i < n; i++) {
+                    chars[pending + i] = text.charAt(from + i);
+                }
+            }
+            from += n;
+            pending += n;
+        }
+    }
+    
+    /**
+     * Encodes the collected text, so that bytes can be written after it.
+     */
+    private void encodePending() throws IOException {
+        if(pending > 0) {
+            encodeChars(false);
+        }
+    }
+    
+    /**
+     * Encodes the {@link #pending} characters of {@link #chars} and keeps the
+     * characters that could not be encoded yet for the next call.
+     */
+    private void encodeChars(boolean endOfInput) throws IOException {
+        charBuffer.limit(pending).position(0);
+        for(;;) {
+            CoderResult result = encoder.encode(charBuffer, staging, endOfInput);
+            drainStaging();
+            if(result.isUnderflow()) {
+                break;
+            }
+        }
+        
+        pending = charBuffer.remaining();
+        System.arraycopy(chars, charBuffer.position(), chars, 0, pending);
+    }
+    
+    /**
+     * Encodes the remaining characters and flushes the encoder.
+     */
+    private void finish() throws IOException {
+        encodeChars(true);
+        while(encoder.flush(staging).isOverflow()) {
+            drainStaging();
+        }
+        drainStaging();
+    }
+    
+    private void drainStaging() throws IOException {
+        staging.flip();
+        put(staging);
+        staging.clear();
+    }
+    
+    /**
+     * Copies the remaining bytes of the given buffer into the direct buffers.
+     */
+    private void put(ByteBuffer src) throws IOException {
+        while(src.hasRemaining()) {
+            ByteBuffer buffer = buffers[current];
+            if(!buffer.hasRemaining()) {
+                if(current + 1 < buffers.length) {
+                    current++;
+                } else {
+                    writeBuffers(null);
+                }
+                buffer = buffers[current];
+            }
+            
+            if(src.remaining() <= buffer.remaining()) {
+                buffer.put(src);
+            } else {
+                int limit = src.limit();
+                src.limit(src.position() + buffer.remaining());
+                buffer.put(src);
+                src.limit(limit);
+            }
+        }
+    }
+    
+    /**
+     * Writes the filled buffers, followed by the given buffer if it is not null,
+     * in a single gathering write.
+     */
+    private void writeBuffers(ByteBuffer extra) throws IOException {
+        int count = 0;
+        long total = 0;
+        for(int i = 0; i <= current; i++) {
+            ByteBuffer buffer = buffers[i];
+            buffer.flip();
+            if(buffer.hasRemaining()) {
+                total += buffer.remaining();
+                gather[count++] = buffer;
+            }
+        }
+        if(extra != null && extra.hasRemaining()) {
+            total += extra.remaining();
+            gather[count++] = extra;
+        }
+        
+        try {
+            long remaining = total;
+            while(remaining > 0) {
+                remaining -= channel.write(gather, 0, count);
+            }
+        } finally {
+            for(int i = 0; i <= current; i++) {
+                buffers[i].clear();
+            }
+            current = 0;
+            for(int i = 0; i < count; i++) {
+                gather[i] = null;
+            }
+        }
+        
+        written += total;
+        Metrics metrics = IOMetrics.get();
+        if(metrics.isEnabled() && total > 0) {
+            metrics.increment(IOMetrics.WRITER_BYTES, total);
+        }
+    }
+    
+    /**
+     * Forces the entry of a replaced file in its directory to the storage device.
+     * Not every platform can open directories, in which case this is skipped.
+     */
+    private static void syncDirectory(File dir) {
+        try(FileChannel d = FileChannel.open(dir.toPath(), StandardOpenOption.READ)) {
+            d.force(true);
+        } catch(IOException e) {
+            // The move itself has succeeded, only its durability could not be ensured.
+        }
+    }
+}
@@ -18,9 +18,19 @@
  */
 package cowlite.io.common;
 
+import cowlite.io.util.IOMetrics;
+import cowlite.io.util.Metrics;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.channels.CompletionHandler;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * This class allows for files on a user's PC to be destroyed and/or removed in
@@ -47,6 +57,12 @@ public class FileOverwriter
      */
     public static final int DEFAULT_BLOCK_SIZE = 512;
     
+    /**
+     * Default amount of writes that are kept in flight per file by 
+     * {@link #overwriteFileAsync(File, boolean)}.
+     */
+    public static final int DEFAULT_OUTSTANDING_WRITES = 8;
+    
     /**
      * Instantiates a new FileOverwriter object with the {@code DEFAULT_BLOCK_SIZE}
      * as the block-size used for overwriting files.
@@ -85,14 +101,24 @@ public class FileOverwriter
      * or due to other IO errors.
      */
     public boolean overwriteFile(File f, boolean delete) throws IOException {
+        Metrics metrics = IOMetrics.get();
+        long start = metrics.isEnabled() ? System.nanoTime() : 0;
+        
         FileOutputStream out = null;
         try {
             long len = f.length();
+            long written = 0;
 
             //Make sure the file is overwritten with data that is atleast the same length.
             out = new FileOutputStream(f);
             for(int j = 0; j < (double)len / (double)block.length; j++) {
                 out.write(block);
+                written += block.length;
+            }
+            
+            if(metrics.isEnabled()) {
+                metrics.recordTime(IOMetrics.OVERWRITER_TIME, System.nanoTime() - start);
+                metrics.increment(IOMetrics.OVERWRITER_BYTES, written);
             }
             
             if(delete) {
@@ -108,4 +134,190 @@ public class FileOverwriter
             }
         }
     }
+    
+    /**
+     * Overwrites the file at the given path without blocking the calling thread.
+     * The file is written through an {@code AsynchronousFileChannel} with
+     * {@link #DEFAULT_OUTSTANDING_WRITES} block writes in flight at the same time.
+     * 
+     * @param f The file that should be overwritten.
+     * @param delete True if you want the file to be deleted afterwards, false if not.
+     * @return A {@code CompletableFuture} which is completed with the {@code WipeResult}
+     * once the file has been overwritten and (if needed) deleted, or completed
+     * exceptionally if the file could not be overwritten.
+     * @see #overwriteFileAsync(File, boolean, int) 
+     */
+    public CompletableFuture<WipeResult> overwriteFileAsync(File f, boolean delete) {
+        return overwriteFileAsync(f, delete, DEFAULT_OUTSTANDING_WRITES);
+    }
+    
+    /**
+     * Overwrites the file at the given path without blocking the calling thread.
+     * Up to {@code outstanding} block writes are issued at the same time so that
+     * the queue of the storage device stays filled. Contrary to {@link #overwriteFile(File, boolean)},
+     * errors are not swallowed but reported through the returned {@code CompletableFuture}.
+     * 
+     * @param f The file that should be overwritten.
+     * @param delete True if you want the file to be deleted afterwards, false if not.
+     * @param outstanding The maximum amount of block writes that are in flight at the same time.
+     * @return A {@code CompletableFuture} which is completed with the {@code WipeResult}
+     * once the file has been overwritten and (if needed) deleted, or completed
+     * exceptionally if the file could not be found, the given file is a directory
+     * or due to other IO errors.
+     * @throws IllegalArgumentException When {@code outstanding} is smaller than 1.
+     */
+    public CompletableFuture<WipeResult> overwriteFileAsync(File f, boolean delete, int outstanding) throws IllegalArgumentException {
+        if(outstanding < 1) {
+            throw new IllegalArgumentException("At least one write has to be outstanding.");
+        }
+        
+        CompletableFuture<WipeResult> future = new CompletableFuture<>();
+        if(f.isDirectory()) {
+            future.completeExceptionally(new IOException(f + " is a directory."));
+            return future;
+        }
+        
+        try {
+            long len = f.length();
+            AsynchronousFileChannel channel = AsynchronousFileChannel.open(f.toPath(), StandardOpenOption.WRITE);
+            new AsyncWipe(f, channel, len, delete, future).start(outstanding);
+        } catch(IOException | RuntimeException e) {
+            future.completeExceptionally(e);
+        }
+        
+        return future;
+    }
+    
+    /**
+     * A single asynchronous wipe of a file. The file is divided into blocks of the
+     * size of {@link #block}, which are handed out to a fixed amount of lanes. Each
+     * lane has one write in flight and claims the next block when its write completes.
+     */
+    private final class AsyncWipe implements CompletionHandler<Integer, Lane> {
+        private final File file;
+        private final AsynchronousFileChannel channel;
+        private final boolean delete;
+        private final CompletableFuture<WipeResult> future;
+        
+        /**
+         * The amount of blocks that have to be written to cover the entire file.
+         */
+        private final long blocks;
+        
+        /**
+         * The index of the next block that has not been claimed by a lane yet.
+         */
+        private final AtomicLong nextBlock = new AtomicLong();
+        
+        /**
+         * The total amount of bytes that have been written.
+         */
+        private final AtomicLong written = new AtomicLong();
+        
+        /**
+         * The amount of lanes that still have blocks to write.
+         */
+        private final AtomicInteger activeLanes = new AtomicInteger();
+        
+        /**
+         * Set when one of the writes failed, so that the other lanes stop.
+         */
+        private final AtomicBoolean failed = new AtomicBoolean();
+        
+        /**
+         * The value of {@code System.nanoTime()} when the wipe was started.
+         */
+        private final long started = System.nanoTime();
+        
+        private AsyncWipe(File file, AsynchronousFileChannel channel, long len, boolean delete, CompletableFuture<WipeResult> future) {
+            this.file = file;
+            this.channel = channel;
+            this.delete = delete;
+            this.future = future;
+            
+            //Make sure the file is overwritten with data that is atleast the same length.
+            this.blocks = (len + block.length - 1) / block.length;
+        }
+        
+        private void start(int outstanding) {
+            int lanes = (int) Math.min(outstanding, blocks);
+            if(lanes == 0) {
+                finish();
+                return;
+            }
+            
+            activeLanes.set(lanes);
+            for(int i = 0; i < lanes; i++) {
+                next(new Lane(ByteBuffer.wrap(block)));
+            }
+        }
+        
+        /**
+         * Lets the given lane claim the next block, or retires the lane if all
+         * blocks have been claimed.
+         */
+        private void next(Lane lane) {
+            long b = nextBlock.getAndIncrement();
+            if(b < blocks && !failed.get()) {
+                lane.buffer.clear();
+                lane.position = b * block.length;
+                channel.write(lane.buffer, lane.position, lane, this);
+            } else if(activeLanes.decrementAndGet() == 0 && !failed.get()) {
+                finish();
+            }
+        }
+        
+        @Override
+        public void completed(Integer result, Lane lane) {
+            written.addAndGet(result);
+            
+            // Partial writes are continued at the position where they stopped.
+            if(lane.buffer.hasRemaining() && !failed.get()) {
+                channel.write(lane.buffer, lane.position + lane.buffer.position(), lane, this);
+            } else {
+                next(lane);
+            }
+        }
+
+        @Override
+        public void failed(Throwable exc, Lane lane) {
+            if(failed.compareAndSet(false, true)) {
+                try {
+                    channel.close();
+                } catch(IOException e) {
+                    exc.addSuppressed(e);
+                }
+                future.completeExceptionally(exc);
+            }
+        }
+        
+        private void finish() {
+            try {
+                channel.close();
+                
+                Metrics metrics = IOMetrics.get();
+                if(metrics.isEnabled()) {
+                    metrics.recordTime(IOMetrics.OVERWRITER_TIME, System.nanoTime() - started);
+                    metrics.increment(IOMetrics.OVERWRITER_BYTES, written.get());
+                }
+                
+                boolean deleted = delete && file.delete();
+                future.complete(new WipeResult(file, written.get(), deleted));
+            } catch(IOException | RuntimeException e) {
+                future.completeExceptionally(e);
+            }
+        }
+    }
+    
+    /**
+     * One of the writes that an {@code AsyncWipe} keeps in flight.
+     */
+    private static final class Lane {
+        private final ByteBuffer buffer;
+        private long position;
+        
+        private Lane(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+    }
 }
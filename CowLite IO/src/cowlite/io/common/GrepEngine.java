@@ -0,0 +1,474 @@
+/* 
+ * Copyright (C) 2018 Wessel Jelle Jongkind.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package cowlite.io.common;
+
+import cowlite.io.util.GrepListener;
+import cowlite.io.util.Match;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.regex.Pattern;
+
+/**
+ * Searches every file in a directory tree for a fixed set of regex codes. The 
+ * tree is monitored by a {@link PathMonitor}, and the matches of every file are
+ * kept between searches. Every call of {@link #run(GrepListener)} updates the
+ * monitor first and only searches the files that it reports as added or updated 
+ * since the previous search; the matches of all other files are reused.
+ * <p>
+ * Files are read and matched by a fixed amount of threads. To bound the memory
+ * that is used, no new files are handed out while the total size of the files
+ * that are being searched exceeds {@link #setMaxBytesInFlight(long)}. When more
+ * than one regex code is used, every file is loaded once and matched in memory; 
+ * otherwise it is streamed from disk.
+ * 
+ * <h1>Basic usage</h1>
+ * <pre><i>
+ *      GrepEngine grep = new GrepEngine(Paths.get("logs"), "ERROR .*", "WARN .*");
+ *      grep.setNameFilter("*.log");
+ * 
+ *      grep.run((file, regex, match) -&#62; System.out.println(file + ":" + match.getStartLine()));
+ * 
+ *      // Later on, only the log files that changed are searched again.
+ *      grep.run(listener);
+ * </i></pre>
+ * 
+ * @version 2026-10-19 (yyyy-mm-dd)
+ */
+public class GrepEngine
+{
+    /**
+     * The default maximum total size of the files that are searched at the same time.
+     */
+    public static final long DEFAULT_MAX_BYTES_IN_FLIGHT = 256L * 1024 * 1024;
+    
+    /**
+     * The monitor of the directory tree that is searched.
+     */
+    private final PathMonitor root;
+    
+    /**
+     * The regex codes for which every file is searched.
+     */
+    private final String[] regexes;
+    
+    /**
+     * The matches per file, with one list per regex code. Only files with at 
+     * least one match are stored.
+     */
+    private final HashMap<Path, List<Match>[]> results = new HashMap<>();
+    
+    /**
+     * The files that could not be searched by the last search, which are searched again by the next.
+     */
+    private final HashMap<Path, PathMonitor> failed = new HashMap<>();
+    
+    /**
+     * {@code true} once every file in the tree has been searched with the current settings.
+     */
+    private boolean initialized;
+    
+    private PathMatcher nameFilter;
+    private long minSize = 0;
+    private long maxSize = Long.MAX_VALUE;
+    private int threads = Runtime.getRuntime().availableProcessors();
+    private long maxBytesInFlight = DEFAULT_MAX_BYTES_IN_FLIGHT;
+    private String charset = "UTF-8";
+    private boolean multiline;
+    
+    /**
+     * The amount of files that were searched by the last call of {@link #run(GrepListener)}.
+     */
+    private int searchedFiles;
+    
+    /**
+     * Instantiates a new {@code GrepEngine} object for the tree that is monitored 
+     * by the given {@code PathMonitor}. The monitor is updated by every search,
+     * so it should not be updated by anything else.
+     * @param root The monitor of the directory tree that has to be searched.
+     * @param regexes The regex codes for which every file has to be searched.
+     * @throws IllegalArgumentException When no regex codes are given or one of them is invalid.
+     */
+    public GrepEngine(PathMonitor root, String... regexes) throws IllegalArgumentException {
+        if(regexes.length == 0) {
+            throw new IllegalArgumentException("At least one regex code is needed.");
+        }
+        for(String regex : regexes) {
+            Pattern.compile(regex);
+        }
+        
+        this.root = root;
+        this.regexes = regexes.clone();
+    }
+    
+    /**
+     * Instantiates a new {@code GrepEngine} object for the directory tree at the given path.
+     * @param root The directory tree that has to be searched.
+     * @param regexes The regex codes for which every file has to be searched.
+     * @throws IOException When the directory is not accessible.
+     * @throws IllegalArgumentException When no regex codes are given or one of them is invalid.
+     */
+    public GrepEngine(Path root, String... regexes) throws IOException, IllegalArgumentException {
+        this(new PathMonitor(root), regexes);
+    }
+    
+    /**
+     * Only searches files whose names match the given glob, such as {@code "*.log"}.
+     * Changing the filter causes the next search to search every file again.
+     * @param glob The glob that file names have to match, or null to search all files.
+     * @see java.nio.file.FileSystem#getPathMatcher(String) 
+     */
+    public void setNameFilter(String glob) {
+        nameFilter = glob == null ? null : FileSystems.getDefault().getPathMatcher("glob:" + glob);
+        reset();
+    }
+    
+    /**
+     * Only searches files of which the size lies within the given bounds. Changing
+     * the bounds causes the next search to search every file again.
+     * @param minSize The minimum size in bytes.
+     * @param maxSize The maximum size in bytes.
+     * @throws IllegalArgumentException When {@code minSize} is negative or larger than {@code maxSize}.
+     */
+    public void setSizeLimits(long minSize, long maxSize) throws IllegalArgumentException {
+        if(minSize < 0 || minSize > maxSize) {
+            throw new IllegalArgumentException("Invalid size limits: " + minSize + " - " + maxSize);
+        }
+        this.minSize = minSize;
+        this.maxSize = maxSize;
+        reset();
+    }
+    
+    /**
+     * Sets the amount of threads that read and match files.
+     * @param threads The amount of threads.
+     * @throws IllegalArgumentException When {@code threads} is smaller than 1.
+     */
+    public void setThreads(int threads) throws IllegalArgumentException {
+        if(threads < 1) {
+            throw new IllegalArgumentException("At least one thread is needed.");
+        }
+        this.threads = threads;
+    }
+    
+    /**
+     * Sets the maximum total size of the files that are searched at the same time.
+     * A file that is larger than this maximum is only searched when no other files are.
+     * @param maxBytesInFlight The maximum total size in bytes.
+     * @throws IllegalArgumentException When {@code maxBytesInFlight} is smaller than 1.
+     */
+    public void setMaxBytesInFlight(long maxBytesInFlight) throws IllegalArgumentException {
+        if(maxBytesInFlight < 1) {
+            throw new IllegalArgumentException("Invalid maximum: " + maxBytesInFlight);
+        }
+        this.maxBytesInFlight = maxBytesInFlight;
+    }
+    
+    /**
+     * Sets the charset of the files that are searched. Changing the charset causes
+     * the next search to search every file again.
+     * @param charset The charset of the files (usually UTF-8 or UTF-16).
+     */
+    public void setCharset(String charset) {
+        this.charset = charset;
+        reset();
+    }
+    
+    /**
+     * Sets whether the regex codes are matched over multiple lines. Changing this
+     * causes the next search to search every file again.
+     * @param multiline {@code true} if regex matching should be done over multiple lines.
+     * @see FileDataReader#getRegexMatches(String, boolean) 
+     */
+    public void setMultiline(boolean multiline) {
+        this.multiline = multiline;
+        reset();
+    }
+    
+    /**
+     * Discards the stored matches so that the next search searches every file.
+     */
+    public void reset() {
+        results.clear();
+        failed.clear();
+        initialized = false;
+    }
+    
+    /**
+     * Searches the directory tree. The first search, and the first search after
+     * the settings were changed, searches every file. Later searches only search
+     * the files that were added or updated since the previous search. The matches
+     * of all files, including those that were not searched again, are then passed
+     * to the given listener.
+     * 
+     * @param listener The listener that receives the matches, or null if the 
+     *                 matches are only obtained through {@link #getMatches(Path, String)}.
+     * @throws IOException When the directory tree could not be updated.
+     * @throws InterruptedException When the thread was interrupted while waiting
+     *                              for files to be searched.
+     */
+    public void run(GrepListener listener) throws IOException, InterruptedException {
+        List<PathMonitor> deleted = new ArrayList<>();
+        List<PathMonitor> added = new ArrayList<>();
+        List<PathMonitor> updated = new ArrayList<>();
+        root.update(deleted, added, updated);
+        
+        LinkedHashMap<Path, PathMonitor> search = new LinkedHashMap<>();
+        if(!initialized) {
+            results.clear();
+            failed.clear();
+            collectFiles(root, search);
+        } else {
+            for(PathMonitor m : deleted) {
+                Path p = m.getFile();
+                results.keySet().removeIf(f -> f.startsWith(p));
+                failed.keySet().removeIf(f -> f.startsWith(p));
+            }
+            search.putAll(failed);
+            failed.clear();
+            for(PathMonitor m : added) {
+                collectFiles(m, search);
+            }
+            for(PathMonitor m : updated) {
+                if(!m.isDirectory()) {
+                    results.remove(m.getFile());
+                    if(accepts(m)) {
+                        search.put(m.getFile(), m);
+                    }
+                }
+            }
+        }
+        
+        searchedFiles = search.size();
+        Set<Path> reported = search(search.values(), listener);
+        initialized = true;
+        
+        if(listener != null) {
+            for(Map.Entry<Path, List<Match>[]> e : results.entrySet()) {
+                if(!reported.contains(e.getKey())) {
+                    report(e.getKey(), e.getValue(), listener);
+                }
+            }
+        }
+    }
+    
+    /**
+     * Searches the given files in parallel and stores their matches. The matches
+     * are passed to the listener as soon as a file has been searched. When the
+     * search is aborted, the files that were not searched yet are stored in 
+     * {@link #failed}, so that the next search searches them again.
+     * @return The files of which the matches were passed to the listener.
+     */
+    private Set<Path> search(Collection<PathMonitor> files, GrepListener listener) throws InterruptedException {
+        Set<Path> reported = new HashSet<>();
+        if(files.isEmpty()) {
+            return reported;
+        }
+        
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(threads, files.size()));
+        CompletionService<Searched> completion = new ExecutorCompletionService<>(executor);
+        ArrayDeque<PathMonitor> queue = new ArrayDeque<>(files);
+        HashMap<Path, PathMonitor> pending = new HashMap<>(files.size() * 4 / 3 + 1);
+        for(PathMonitor m : files) {
+            pending.put(m.getFile(), m);
+        }
+        long inFlight = 0;
+        int running = 0;
+        
+        try {
+            while(!queue.isEmpty() || running > 0) {
+                // Hand out files as long as the budget allows it; a single file always fits.
+                while(!queue.isEmpty() && running < threads * 2
+                        && (running == 0 || inFlight + queue.peek().getSize() <= maxBytesInFlight)) {
+                    PathMonitor m = queue.poll();
+                    inFlight += m.getSize();
+                    running++;
+                    completion.submit(() -> search(m));
+                }
+                
+                Searched done;
+                try {
+                    done = completion.take().get();
+                } catch(ExecutionException e) {
+                    throw new IllegalStateException(e.getCause());
+                }
+                inFlight -= done.size;
+                running--;
+                pending.remove(done.file);
+                
+                if(done.error != null) {
+                    failed.put(done.file, done.monitor);
+                    if(listener != null) {
+                        listener.onError(done.file, done.error);
+                    }
+                } else if(done.matches != null) {
+                    results.put(done.file, done.matches);
+                    if(listener != null) {
+                        report(done.file, done.matches, listener);
+                        reported.add(done.file);
+                    }
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+            failed.putAll(pending);
+        }
+        
+        return reported;
+    }
+    
+    /**
+     * Searches a single file. Runs on one of the threads of the search.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private Searched search(PathMonitor m) {
+        Path file = m.getFile();
+        try {
+            FileDataReader reader = new FileDataReader();
+            reader.setPath(file.toString(), charset, regexes.length > 1);
+            
+            List<Match>[] matches = new List[regexes.length];
+            boolean found = false;
+            for(int i = 0; i < regexes.length; i++) {
+                matches[i] = reader.getRegexMatches(regexes[i], multiline);
+                found |= !matches[i].isEmpty();
+            }
+            return new Searched(m, found ? matches : null, null);
+        } catch(IOException e) {
+            return new Searched(m, null, e);
+        } catch(UncheckedIOException e) {
+            return new Searched(m, null, e.getCause());
+        }
+    }
+    
+    /**
+     * Passes the matches of a file to the listener.
+     */
+    private void report(Path file, List<Match>[] matches, GrepListener listener) {
+        for(int i = 0; i < regexes.length; i++) {
+            for(Match match : matches[i]) {
+                listener.onMatch(file, regexes[i], match);
+            }
+        }
+    }
+    
+    /**
+     * Adds the given monitor, or all monitors of files below it, that pass the
+     * filters to the given list.
+     */
+    private void collectFiles(PathMonitor m, Map<Path, PathMonitor> files) {
+        if(!m.isDirectory()) {
+            if(accepts(m)) {
+                files.put(m.getFile(), m);
+            }
+            return;
+        }
+        
+        for(PathMonitor child : m.getChildren().values()) {
+            collectFiles(child, files);
+        }
+    }
+    
+    /**
+     * Returns {@code true} if the file of the given monitor passes the name and size filters.
+     */
+    private boolean accepts(PathMonitor m) {
+        return m.getSize() >= minSize && m.getSize() <= maxSize
+                && (nameFilter == null || (m.getName() != null && nameFilter.matches(m.getName())));
+    }
+    
+    /**
+     * Returns the matches of the given regex code in the given file, as found by
+     * the last search.
+     * @param file The file of which the matches should be returned.
+     * @param regex One of the regex codes with which this {@code GrepEngine} was instantiated.
+     * @return The matches, or an empty list if there are none.
+     * @throws IllegalArgumentException When the regex code is not searched for.
+     */
+    public List<Match> getMatches(Path file, String regex) throws IllegalArgumentException {
+        for(int i = 0; i < regexes.length; i++) {
+            if(regexes[i].equals(regex)) {
+                List<Match>[] matches = results.get(file);
+                return matches == null ? Collections.<Match>emptyList() : Collections.unmodifiableList(matches[i]);
+            }
+        }
+        throw new IllegalArgumentException("Not searched for: " + regex);
+    }
+    
+    /**
+     * Returns the files in which at least one match was found by the last search.
+     * @return The files in which at least one match was found.
+     */
+    public Set<Path> getMatchedFiles() {
+        return Collections.unmodifiableSet(results.keySet());
+    }
+    
+    /**
+     * Returns the amount of files that were searched by the last search. Files 
+     * whose matches were reused are not counted.
+     * @return The amount of files that were searched by the last search.
+     */
+    public int getSearchedFileCount() {
+        return searchedFiles;
+    }
+    
+    /**
+     * Returns the monitor of the directory tree that is searched.
+     * @return The monitor of the directory tree that is searched.
+     */
+    public PathMonitor getRoot() {
+        return root;
+    }
+    
+    /**
+     * The outcome of searching a single file.
+     */
+    private static final class Searched {
+        private final PathMonitor monitor;
+        private final Path file;
+        private final long size;
+        private final List<Match>[] matches;
+        private final IOException error;
+        
+        private Searched(PathMonitor monitor, List<Match>[] matches, IOException error) {
+            this.monitor = monitor;
+            this.file = monitor.getFile();
+            this.size = monitor.getSize();
+            this.matches = matches;
+            this.error = error;
+        }
+    }
+}
@@ -0,0 +1,389 @@
+/* 
+ * Copyright (C) 2018 Wessel Jelle Jongkind.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package cowlite.io.common;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.SequenceInputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+
+/**
+ * Opens files for reading and transparently decompresses gzip files, which are
+ * recognized by their magic bytes rather than by their name.
+ * <p>
+ * Block-compressed gzip files (BGZF, as written by {@code bgzip}) consist of
+ * many small gzip members of which the header records the compressed size. The
+ * members of such files are read ahead and inflated in parallel on the common
+ * {@code ForkJoinPool}, and are handed out in order. Other gzip files, including
+ * files with multiple members, have to be inflated in order, because the end of
+ * a member is only known once it has been inflated; they are read through a
+ * {@code GZIPInputStream}.
+ * 
+ * @version 2026-10-19 (yyyy-mm-dd)
+ */
+final class GzipInput
+{
+    private static final int ID1 = 0x1f;
+    private static final int ID2 = 0x8b;
+    private static final int DEFLATE = 8;
+    
+    private static final int FHCRC = 2;
+    private static final int FEXTRA = 4;
+    private static final int FNAME = 8;
+    private static final int FCOMMENT = 16;
+    
+    /**
+     * The size of the fixed part of a gzip header, including the length of the
+     * extra field.
+     */
+    private static final int HEADER_SIZE = 12;
+    
+    /**
+     * The size of the buffer with which compressed data is read.
+     */
+    private static final int BUFFER_SIZE = 64 * 1024;
+    
+    private GzipInput() {
+    }
+    
+    /**
+     * Returns {@code true} if the file at the given path starts with the magic 
+     * bytes of a gzip file.
+     * @param path The path to the file.
+     * @return {@code true} if the file is a gzip file.
+     * @throws IOException When the file is not accessible.
+     */
+    static boolean isGzip(String path) throws IOException {
+        try(FileChannel channel = FileChannel.open(Paths.get(path), StandardOpenOption.READ)) {
+            return isGzip(channel);
+        }
+    }
+    
+    /**
+     * Returns {@code true} if the file of the given channel starts with the magic
+     * bytes of a gzip file. The position of the channel is not changed.
+     * @param channel The channel of the file.
+     * @return {@code true} if the file is a gzip file.
+     * @throws IOException When the file could not be read.
+     */
+    static boolean isGzip(FileChannel channel) throws IOException {
+        ByteBuffer magic = ByteBuffer.allocate(3);
+        while(magic.hasRemaining() && channel.read(magic, magic.position()) > 0) {
+        }
+        return magic.position() == 3 && (magic.get(0) & 0xff) == ID1 && (magic.get(1) & 0xff) == ID2 && magic.get(2) == DEFLATE;
+    }
+    
+    /**
+     * Opens the file at the given path, and decompresses it if it is a gzip file.
+     * @param path The path to the file.
+     * @return A stream of the (decompressed) contents of the file.
+     * @throws IOException When the file is not accessible or is not a valid gzip file.
+     */
+    static InputStream open(String path) throws IOException {
+        FileInputStream in = new FileInputStream(path);
+        try {
+            return decompress(in);
+        } catch(IOException | RuntimeException e) {
+            in.close();
+            throw e;
+        }
+    }
+    
+    /**
+     * Returns a stream of the decompressed contents of the given file if it is 
+     * a gzip file, or the given stream itself if it is not. Closing the returned
+     * stream closes the given stream.
+     * @param in A stream of the file, which has not been read yet.
+     * @return A stream of the (decompressed) contents of the file.
+     * @throws IOException When the file could not be read or is not a valid gzip file.
+     */
+    static InputStream decompress(FileInputStream in) throws IOException {
+        if(!isGzip(in.getChannel())) {
+            return in;
+        }
+        return new BlockInputStream(new DataInputStream(new BufferedInputStream(in, BUFFER_SIZE)));
+    }
+    
+    /**
+     * Inflates the members of a BGZF file in parallel, and falls back to a 
+     * {@code GZIPInputStream} as soon as a member without a recorded size is found.
+     */
+    private static final class BlockInputStream extends InputStream {
+        private final DataInputStream in;
+        
+        /**
+         * The members that are being inflated, in the order of the file.
+         */
+        private final ArrayDeque<CompletableFuture<byte[]>> pending = new ArrayDeque<>();
+        
+        /**
+         * The amount of members that are inflated ahead of the reader.
+         */
+        private final int readAhead = 2 * ForkJoinPool.getCommonPoolParallelism() + 2;
+        
+        /**
+         * The stream from which the rest of the file is read once a member without
+         * a recorded size is found, or null.
+         */
+        private InputStream tail;
+        
+        /**
+         * {@code true} once all members have been read from the file.
+         */
+        private boolean exhausted;
+        
+        private byte[] block = new byte[0];
+        private int position;
+        
+        private BlockInputStream(DataInputStream in) throws IOException {
+            this.in = in;
+            fill();
+        }
+        
+        @Override
+        public int read() throws IOException {
+            byte[] one = new byte[1];
+            return read(one, 0, 1) < 0 ? -1 : one[0] & 0xff;
+        }
+        
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if(len == 0) {
+                return 0;
+            }
+            
+            while(position == block.length) {
+                if(!pending.isEmpty()) {
+                    block = await(pending.poll());
+                    position = 0;
+                    fill();
+                } else if(tail != null) {
+                    return tail.read(b, off, len);
+                } else {
+                    return -1;
+                }
+            }
+            
+            int n = Math.min(len, block.length - position);
+            System.arraycopy(block, position, b, off, n);
+            position += n;
+            return n;
+        }
+        
+        /**
+         * Reads members from the file and starts inflating them until {@link #readAhead}
+         * members are pending.
+         */
+        private void fill() throws IOException {
+            while(!exhausted && pending.size() < readAhead) {
+                byte[] header = new byte[HEADER_SIZE];
+                int n = readFully(header);
+                if(n == 0) {
+                    exhausted = true;
+                    return;
+                }
+                if(n < HEADER_SIZE || (header[0] & 0xff) != ID1 || (header[1] & 0xff) != ID2 || header[2] != DEFLATE) {
+                    throw new IOException("Not in gzip format.");
+                }
+                
+                int flags = header[3] & 0xff;
+                byte[] extra = new byte[0];
+                int size = -1;
+                if((flags & FEXTRA) != 0) {
+                    extra = new byte[(header[10] & 0xff) | (header[11] & 0xff) << 8];
+                    in.readFully(extra);
+                    size = blockSize(extra);
+                }
+                
+                if(size < 0) {
+                    // No recorded size, the rest of the file is inflated in order.
+                    byte[] read = new byte[HEADER_SIZE + extra.length];
+                    System.arraycopy(header, 0, read, 0, HEADER_SIZE);
+                    System.arraycopy(extra, 0, read, HEADER_SIZE, extra.length);
+                    tail = new GZIPInputStream(new SequenceInputStream(new ByteArrayInputStream(read), in), BUFFER_SIZE);
+                    exhausted = true;
+                    return;
+                }
+                
+                // The member has to hold at least its header and the trailer with the CRC32 and size.
+                if(size < HEADER_SIZE + extra.length + 8) {
+                    throw new IOException("Damaged gzip block");
+                }
+                byte[] rest = new byte[size - HEADER_SIZE - extra.length];
+                in.readFully(rest);
+                pending.add(CompletableFuture.supplyAsync(() -> inflate(rest, flags)));
+            }
+        }
+        
+        private int readFully(byte[] b) throws IOException {
+            int n = 0;
+            while(n < b.length) {
+                int r = in.read(b, n, b.length - n);
+                if(r < 0) {
+                    break;
+                }
+                n += r;
+            }
+            return n;
+        }
+        
+        @Override
+        public void close() throws IOException {
+            for(CompletableFuture<byte[]> f : pending) {
+                f.cancel(false);
+            }
+            pending.clear();
+            if(tail != null) {
+                tail.close();
+            } else {
+                in.close();
+            }
+        }
+    }
+    
+    /**
+     * Returns the total size of a BGZF member from the extra field of its header.
+     * @param extra The extra field.
+     * @return The total size of the member in bytes, or -1 if the extra field does
+     * not record it.
+     */
+    private static int blockSize(byte[] extra) {
+        int i = 0;
+        while(i + 4 <= extra.length) {
+            int length = (extra[i + 2] & 0xff) | (extra[i + 3] & 0xff) << 8;
+            if(extra[i] == 'B' && extra[i + 1] == 'C' && length == 2 && i + 6 <= extra.length) {
+                return ((extra[i + 4] & 0xff) | (extra[i + 5] & 0xff) << 8) + 1;
+            }
+            i += 4 + length;
+        }
+        return -1;
+    }
+    
+    /**
+     * The inflaters of the threads of the common pool, which are reused for every member.
+     */
+    private static final ThreadLocal<Inflater> INFLATERS = ThreadLocal.withInitial(() -> new Inflater(true));
+    
+    /**
+     * Inflates a single member.
+     * @param member The member, starting right after the extra field of the header.
+     * @param flags The flags of the header of the member.
+     * @return The inflated contents of the member.
+     * @throws UncheckedIOException When the member is corrupt.
+     */
+    private static byte[] inflate(byte[] member, int flags) {
+        try {
+            int offset = 0;
+            if((flags & FNAME) != 0) {
+                offset = skipString(member, offset);
+            }
+            if((flags & FCOMMENT) != 0) {
+                offset = skipString(member, offset);
+            }
+            if((flags & FHCRC) != 0) {
+                offset += 2;
+            }
+            
+            int trailer = member.length - 8;
+            if(trailer < offset) {
+                throw new EOFException("Truncated gzip member.");
+            }
+            long crc = littleEndian(member, trailer);
+            long size = littleEndian(member, trailer + 4);
+            
+            // A member of at most 64KB can not inflate to more than about 64MB.
+            if(size > 1024L * member.length + 1024) {
+                throw new IOException("Corrupt gzip member.");
+            }
+            
+            byte[] out = new byte[(int) size];
+            Inflater inflater = INFLATERS.get();
+            inflater.reset();
+            inflater.setInput(member, offset, trailer - offset);
+            int n = 0;
+            while(n < out.length && !inflater.finished()) {
+                int r = inflater.inflate(out, n, out.length - n);
+                if(r == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                n += r;
+            }
+            
+            CRC32 check = new CRC32();
+            check.update(out, 0, n);
+            if(n != size || check.getValue() != crc) {
+                throw new IOException("Corrupt gzip member.");
+            }
+            return out;
+        } catch(DataFormatException e) {
+            throw new UncheckedIOException(new IOException("Corrupt gzip member.", e));
+        } catch(IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+    
+    private static int skipString(byte[] b, int offset) throws EOFException {
+        while(offset < b.length && b[offset] != 0) {
+            offset++;
+        }
+        if(offset == b.length) {
+            throw new EOFException("Truncated gzip header.");
+        }
+        return offset + 1;
+    }
+    
+    private static long littleEndian(byte[] b, int offset) {
+        return (b[offset] & 0xffL) | (b[offset + 1] & 0xffL) << 8 | (b[offset + 2] & 0xffL) << 16 | (b[offset + 3] & 0xffL) << 24;
+    }
+    
+    /**
+     * Waits for a member to be inflated.
+     */
+    private static byte[] await(CompletableFuture<byte[]> future) throws IOException {
+        try {
+            return future.get();
+        } catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while inflating.");
+        } catch(ExecutionException e) {
+            if(e.getCause() instanceof UncheckedIOException) {
+                throw ((UncheckedIOException) e.getCause()).getCause();
+            }
+            throw new IOException(e.getCause());
+        }
+    }
+}
@@ -0,0 +1,274 @@
+/* 
+ * Copyright (C) 2018 Wessel Jelle Jongkind.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package cowlite.io.common;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * The byte offsets at which the lines of a file start and end, with the lines 
+ * split like {@code BufferedReader#readLine()} splits them. With these offsets,
+ * a position in a line can be translated to an absolute byte offset in the file
+ * by encoding the part of the line that precedes it.
+ * <p>
+ * Line terminators are found by comparing the encoded {@code \n} and {@code \r}
+ * to every code unit of the file, which works for every charset in which these
+ * bytes can not occur inside other characters, such as UTF-8, UTF-16, UTF-32 
+ * and the single-byte charsets. Offsets in files that contain malformed input are
+ * approximations, because the replacement characters are encoded differently.
+ * 
+ * @version 2026-10-19 (yyyy-mm-dd)
+ */
+final class LineOffsets
+{
+    /**
+     * The charset with which lines are encoded. For charsets with a byte order
+     * mark, this is the variant without one that matches the byte order of the file.
+     */
+    private final Charset charset;
+    
+    /**
+     * The amount of bytes that {@code String#getBytes(Charset)} puts in front of
+     * the encoded characters.
+     */
+    private final int bomLength;
+    
+    private long[] starts = new long[16];
+    private long[] ends = new long[16];
+    private int count;
+    
+    private LineOffsets(Charset charset, int bomLength) {
+        this.charset = charset;
+        this.bomLength = bomLength;
+    }
+    
+    /**
+     * Reads the file at the given path and records the offsets of its lines.
+     * The offsets of gzip files refer to their decompressed contents.
+     * @param path The path to the file.
+     * @param charset The charset of the file.
+     * @return The offsets of the lines of the file.
+     * @throws IOException When the file is not accessible.
+     */
+    static LineOffsets of(String path, Charset charset) throws IOException {
+        try(ReadableByteChannel channel = Channels.newChannel(GzipInput.open(path))) {
+            ByteBuffer buf = ByteBuffer.allocate(LineReader.CHUNK_SIZE);
+            while(buf.hasRemaining() && channel.read(buf) >= 0) {
+            }
+            buf.flip();
+            
+            // Charsets such as UTF-16 read the byte order from a byte order mark.
+            byte[] marked = "\n".getBytes(charset);
+            int bom = 2 * marked.length - "\n\n".getBytes(charset).length;
+            long first = 0;
+            if(bom > 0 && buf.remaining() >= bom) {
+                boolean same = true;
+                boolean reversed = true;
+                for(int i = 0; i < bom; i++) {
+                    same &= buf.get(i) == marked[i];
+                    reversed &= buf.get(i) == marked[bom - 1 - i];
+                }
+                if(same || reversed) {
+                    first = bom;
+                }
+                if(reversed && !same) {
+                    charset = Charset.forName(charset.name() + "LE");
+                    bom = 0;
+                } else if(Charset.isSupported(charset.name() + "BE")) {
+                    charset = Charset.forName(charset.name() + "BE");
+                    bom = 0;
+                }
+            }
+            
+            LineOffsets offsets = new LineOffsets(charset, bom);
+            offsets.scan(channel, buf, first);
+            return offsets;
+        }
+    }
+    
+    /**
+     * Finds the line terminators in the file, starting with the contents of the
+     * given buffer.
+     */
+    private void scan(ReadableByteChannel channel, ByteBuffer buf, long first) throws IOException {
+        long size = buf.limit();
+        byte[] lf = unit('\n');
+        byte[] cr = unit('\r');
+        int width = lf.length;
+        
+        long position = first;
+        buf.position((int) first);
+        long lineStart = first;
+        boolean afterCR = false;
+        
+        while(true) {
+            while(buf.remaining() >= width) {
+                boolean isLF = matches(buf, lf);
+                boolean isCR = !isLF && matches(buf, cr);
+                buf.position(buf.position() + width);
+                
+                if(isLF && afterCR) {
+                    // The second half of \r\n, the line was already ended at the \r.
+                    lineStart = position + width;
+                } else if(isLF || isCR) {
+                    add(lineStart, position);
+                    lineStart = position + width;
+                }
+                afterCR = isCR;
+                position += width;
+            }
+            
+            buf.compact();
+            int n = channel.read(buf);
+            if(n < 0) {
+                break;
+            }
+            size += n;
+            buf.flip();
+        }
+        
+        // The last line does not have to be terminated.
+        if(size > lineStart) {
+            add(lineStart, size);
+        }
+    }
+    
+    /**
+     * Returns the encoded form of a single line terminator character.
+     */
+    private byte[] unit(char c) {
+        byte[] bytes = String.valueOf(c).getBytes(charset);
+        return Arrays.copyOfRange(bytes, bomLength, bytes.length);
+    }
+    
+    private static boolean matches(ByteBuffer buf, byte[] unit) {
+        for(int i = 0; i < unit.length; i++) {
+            if(buf.get(buf.position() + i) != unit[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    private void add(long start, long end) {
+        if(count == starts.length) {
+            starts = Arrays.copyOf(starts, count * 2);
+            ends = Arrays.copyOf(ends, count * 2);
+        }
+        starts[count] = start;
+        ends[count] = end;
+        count++;
+    }
+    
+    /**
+     * Returns the amount of lines in the file.
+     * @return The amount of lines in the file.
+     */
+    int getLineCount() {
+        return count;
+    }
+    
+    /**
+     * Returns the byte offset at which the given line starts.
+     * @param line The number of the line, starting with 0.
+     * @return The byte offset at which the line starts.
+     */
+    long getLineStart(int line) {
+        checkLine(line);
+        return starts[line];
+    }
+    
+    /**
+     * Returns the byte offset at which the given line ends, not counting its line terminator.
+     * @param line The number of the line, starting with 0.
+     * @return The byte offset at which the line ends.
+     */
+    long getLineEnd(int line) {
+        checkLine(line);
+        return ends[line];
+    }
+    
+    /**
+     * Returns the absolute byte offset of the character with the given index in
+     * the given line.
+     * @param line The number of the line, starting with 0.
+     * @param text The contents of the line.
+     * @param index The index of the character in the line.
+     * @return The absolute byte offset of the character.
+     */
+    long getByteOffset(int line, String text, int index) {
+        return getLineStart(line) + encodedLength(text, index);
+    }
+    
+    /**
+     * Returns the charset with which the lines of the file are encoded, without
+     * a byte order mark.
+     * @return The charset with which the lines of the file are encoded.
+     */
+    Charset getCharset() {
+        return charset;
+    }
+    
+    /**
+     * Returns the amount of bytes of the first {@code length} characters of the
+     * given text when it is encoded.
+     */
+    private int encodedLength(String text, int length) {
+        if(length == 0) {
+            return 0;
+        }
+        
+        if(charset.equals(StandardCharsets.UTF_8)) {
+            int bytes = 0;
+            for(int i = 0; i < length; i++) {
+                char c = text.charAt(i);
+                if(c < 0x80) {
+                    bytes++;
+                } else if(c < 0x800) {
+                    bytes += 2;
+                } else if(Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(text.charAt(i + 1))) {
+                    bytes += 4;
+                    i++;
+                } else if(Character.isSurrogate(c)) {
+                    // Unpaired surrogates are replaced by a single '?'.
+                    bytes++;
+                } else {
+                    bytes += 3;
+                }
+            }
+            return bytes;
+        }
+        
+        if(charset.equals(StandardCharsets.ISO_8859_1) || charset.equals(StandardCharsets.US_ASCII)) {
+            return length;
+        }
+        return text.substring(0, length).getBytes(charset).length - bomLength;
+    }
+    
+    private void checkLine(int line) {
+        if(line < 0 || line >= count) {
+            throw new IndexOutOfBoundsException("Line " + line + " of " + count);
+        }
+    }
+}
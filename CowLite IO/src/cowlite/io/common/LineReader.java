@@ -0,0 +1,297 @@
+/* 
+ * Copyright (C) 2018 Wessel Jelle Jongkind.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package cowlite.io.common;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.SequenceInputStream;
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.Charset;
+import java.nio.charset.IllegalCharsetNameException;
+import java.nio.charset.StandardCharsets;
+import java.nio.charset.UnsupportedCharsetException;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Reads lines from an {@code InputStream} with the same semantics as
+ * {@code BufferedReader#readLine()}: lines are terminated by {@code \n}, {@code \r}
+ * or {@code \r\n} and the terminators are not included in the lines.
+ * <p>
+ * For charsets in which the bytes 0 - 127 always denote the ASCII characters
+ * (UTF-8, US-ASCII and ISO-8859-1), the stream is read in large chunks which are
+ * scanned eight bytes at a time for line terminators. As long as only ASCII bytes
+ * are found, lines are created directly from the bytes without going through a 
+ * {@code CharsetDecoder}. As soon as a non-ASCII byte is found, the remainder of
+ * the stream, starting with the current line, is decoded by a regular 
+ * {@code BufferedReader}. For all other charsets the {@code BufferedReader} is
+ * used from the start.
+ * 
+ * @version 2026-10-19 (yyyy-mm-dd)
+ */
+final class LineReader implements Closeable
+{
+    /**
+     * The size of the chunks in which the stream is read.
+     */
+    static final int CHUNK_SIZE = 64 * 1024;
+    
+    private static final long ONES = 0x0101010101010101L;
+    private static final long HIGHS = 0x8080808080808080L;
+    private static final long LFS = ONES * '\n';
+    private static final long CRS = ONES * '\r';
+    
+    /**
+     * Charsets that were already looked up by name.
+     */
+    private static final ConcurrentHashMap<String, Charset> CHARSETS = new ConcurrentHashMap<>();
+    
+    private final InputStream in;
+    private final Charset charset;
+    
+    /**
+     * The bytes that have been read from the stream, but not returned as lines yet,
+     * are found in {@code buf[start]} to {@code buf[end - 1]}.
+     */
+    private byte[] buf;
+    private int start;
+    private int end;
+    
+    /**
+     * A view of {@link #buf} used to read eight bytes at a time.
+     */
+    private ByteBuffer words;
+    
+    private boolean eof;
+    
+    /**
+     * The reader that decodes the remainder of the stream once the fast path
+     * has been left, or null while the fast path is used.
+     */
+    private BufferedReader fallback;
+    
+    /**
+     * Instantiates a new {@code LineReader} object.
+     * @param in The stream to read lines from.
+     * @param charset The charset of the stream.
+     */
+    LineReader(InputStream in, Charset charset) {
+        this(in, charset, null);
+    }
+    
+    /**
+     * Instantiates a new {@code LineReader} object which reads into the given buffer.
+     * The buffer is replaced by a larger one when a line does not fit in it.
+     * @param in The stream to read lines from.
+     * @param charset The charset of the stream.
+     * @param buffer The buffer to read into, or null to allocate a new one.
+     */
+    LineReader(InputStream in, Charset charset, byte[] buffer) {
+        this.in = in;
+        this.charset = charset;
+        
+        if(isAsciiCompatible(charset)) {
+            setBuffer(buffer != null && buffer.length >= 8 ? buffer : new byte[CHUNK_SIZE]);
+        } else {
+            fallback = new BufferedReader(new InputStreamReader(in, charset));
+        }
+    }
+    
+    /**
+     * Looks up the charset with the given name. Charsets that have been looked up
+     * before are not looked up again.
+     * @param name The name of the charset.
+     * @return The charset with the given name.
+     * @throws UnsupportedEncodingException When the charset is not supported.
+     */
+    static Charset charset(String name) throws UnsupportedEncodingException {
+        Charset charset = CHARSETS.get(name);
+        if(charset == null) {
+            try {
+                charset = Charset.forName(name);
+            } catch(IllegalCharsetNameException | UnsupportedCharsetException e) {
+                throw new UnsupportedEncodingException(name);
+            }
+            CHARSETS.put(name, charset);
+        }
+        return charset;
+    }
+    
+    /**
+     * Returns {@code true} if the bytes 0 - 127 always denote the ASCII characters
+     * in the given charset, and never occur as part of another character.
+     * @param charset The charset to check.
+     * @return {@code true} if the charset is ASCII compatible.
+     */
+    static boolean isAsciiCompatible(Charset charset) {
+        return charset.equals(StandardCharsets.UTF_8)
+                || charset.equals(StandardCharsets.US_ASCII)
+                || charset.equals(StandardCharsets.ISO_8859_1);
+    }
+    
+    /**
+     * Reads the next line.
+     * @return The next line, or null if the end of the stream has been reached.
+     * @throws IOException When the stream could not be read.
+     */
+    String readLine() throws IOException {
+        if(fallback != null) {
+            return fallback.readLine();
+        }
+        
+        int pos = start;
+        while(true) {
+            int i = scan(pos, end);
+            
+            if(i == end) {
+                // No terminator in the buffer, read the next chunk.
+                int scanned = end - start;
+                if(!fill()) {
+                    if(start == end) {
+                        return null;
+                    }
+                    String line = ascii(start, end);
+                    start = end;
+                    return line;
+                }
+                pos = start + scanned;
+                continue;
+            }
+            
+            byte b = buf[i];
+            if(b < 0) {
+                leaveFastPath();
+                return fallback.readLine();
+            }
+            
+            // A \r at the end of the buffer might be followed by a \n in the next chunk.
+            if(b == '\r' && i + 1 == end) {
+                int offset = i - start;
+                fill();
+                i = start + offset;
+            }
+            
+            String line = ascii(start, i);
+            int next = i + 1;
+            if(b == '\r' && next < end && buf[next] == '\n') {
+                next++;
+            }
+            start = next;
+            return line;
+        }
+    }
+    
+    /**
+     * Returns the buffer that this reader reads into, so that it can be reused
+     * by a next {@code LineReader}.
+     * @return The buffer that this reader reads into, or null if it has none.
+     */
+    byte[] getBuffer() {
+        return buf;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+    
+    /**
+     * Returns the index of the first line terminator or non-ASCII byte in
+     * {@code buf[pos]} to {@code buf[end - 1]}, or {@code end} if there is none.
+     */
+    private int scan(int pos, int end) {
+        // Skip eight bytes at a time while none of them is \n, \r or has its high bit set.
+        while(pos + 8 <= end) {
+            long word = words.getLong(pos);
+            long lf = word ^ LFS;
+            long cr = word ^ CRS;
+            long found = ((lf - ONES) & ~lf) | ((cr - ONES) & ~cr) | word;
+            if((found & HIGHS) != 0) {
+                break;
+            }
+            pos += 8;
+        }
+        
+        for(; pos < end; pos++) {
+            byte b = buf[pos];
+            if(b == '\n' || b == '\r' || b < 0) {
+                return pos;
+            }
+        }
+        return end;
+    }
+    
+    /**
+     * Reads the next chunk from the stream into the buffer. The unread bytes are
+     * moved to the start of the buffer first, and the buffer is enlarged if it
+     * is entirely filled with unread bytes.
+     * @return {@code false} if the end of the stream has been reached.
+     */
+    private boolean fill() throws IOException {
+        if(eof) {
+            return false;
+        }
+        
+        if(start > 0) {
+            System.arraycopy(buf, start, buf, 0, end - start);
+            end -= start;
+            start = 0;
+        }
+        if(end == buf.length) {
+            setBuffer(Arrays.copyOf(buf, buf.length * 2));
+        }
+        
+        int n = in.read(buf, end, buf.length - end);
+        if(n < 0) {
+            eof = true;
+            return false;
+        }
+        end += n;
+        return true;
+    }
+    
+    /**
+     * Creates a line from ASCII bytes. Decoding them as ISO-8859-1 is a plain copy.
+     */
+    private String ascii(int from, int to) {
+        return new String(buf, from, to - from, StandardCharsets.ISO_8859_1);
+    }
+    
+    /**
+     * Continues reading with a {@code BufferedReader} which decodes the unread bytes
+     * in the buffer followed by the rest of the stream.
+     */
+    private void leaveFastPath() {
+        InputStream rest = new SequenceInputStream(new ByteArrayInputStream(buf, start, end - start), in);
+        fallback = new BufferedReader(new InputStreamReader(rest, charset));
+        buf = null;
+        words = null;
+    }
+    
+    private void setBuffer(byte[] buffer) {
+        buf = buffer;
+        words = ByteBuffer.wrap(buffer).order(ByteOrder.nativeOrder());
+    }
+}
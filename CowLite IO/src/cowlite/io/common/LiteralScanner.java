@@ -0,0 +1,228 @@
+/* 
+ * Copyright (C) 2018 Wessel Jelle Jongkind.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package cowlite.io.common;
+
+import cowlite.io.util.Match;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Searches the bytes of a file for a literal with the Boyer-Moore-Horspool algorithm,
+ * without decoding the file. Only the lines in which the literal is found are
+ * decoded, so that they can be turned into {@code Match} objects.
+ * <p>
+ * The file is read in chunks that always end at a line terminator; the incomplete
+ * line at the end of a chunk is carried over to the next chunk. As a literal never
+ * contains a line terminator, every occurrence lies within a single chunk. This
+ * only works for charsets in which line terminators and the encoded literal can
+ * not occur inside other characters, see {@link LineReader#isAsciiCompatible(Charset)}.
+ * 
+ * @version 2026-10-19 (yyyy-mm-dd)
+ */
+final class LiteralScanner
+{
+    /**
+     * The size of the chunks in which the file is read.
+     */
+    private static final int CHUNK_SIZE = 1024 * 1024;
+    
+    private final String literal;
+    private final byte[] needle;
+    private final Charset charset;
+    private final int chunkSize;
+    
+    /**
+     * The amount of positions the search may skip for each value of the last byte
+     * under the needle.
+     */
+    private final int[] shift;
+    
+    /**
+     * Instantiates a new {@code LiteralScanner} object.
+     * @param literal The literal to search for. It may not be empty or contain line terminators.
+     * @param charset The charset of the files that are searched.
+     */
+    LiteralScanner(String literal, Charset charset) {
+        this(literal, charset, CHUNK_SIZE);
+    }
+    
+    /**
+     * Instantiates a new {@code LiteralScanner} object which reads files in chunks
+     * of the given size.
+     * @param literal The literal to search for. It may not be empty or contain line terminators.
+     * @param charset The charset of the files that are searched.
+     * @param chunkSize The size of the chunks in which files are read.
+     */
+    LiteralScanner(String literal, Charset charset, int chunkSize) {
+        this.literal = literal;
+        this.charset = charset;
+        this.chunkSize = chunkSize;
+        this.needle = literal.getBytes(charset);
+        
+        shift = new int[256];
+        Arrays.fill(shift, needle.length);
+        for(int i = 0; i < needle.length - 1; i++) {
+            shift[needle[i] & 0xff] = needle.length - 1 - i;
+        }
+    }
+    
+    /**
+     * Searches the stream for the literal.
+     * @param in The stream to search.
+     * @param matches The list to which a {@code Match} is added for every occurrence
+     *                of the literal, or null if the search should stop at the first
+     *                occurrence.
+     * @return {@code true} if the literal was found.
+     * @throws IOException When the stream could not be read.
+     */
+    boolean scan(InputStream in, List<Match> matches) throws IOException {
+        byte[] buf = new byte[Math.max(chunkSize, needle.length * 2)];
+        int end = 0;
+        boolean eof = false;
+        boolean found = false;
+        Matcher matcher = matches != null ? Pattern.compile(Pattern.quote(literal)).matcher("") : null;
+        
+        // The line number of the line that starts at buf[0]
+        int line = 0;
+        
+        while(!eof) {
+            int n = in.read(buf, end, buf.length - end);
+            if(n < 0) {
+                eof = true;
+            } else {
+                end += n;
+            }
+            
+            // Only search complete lines, unless this is the last chunk.
+            int limit = eof ? end : lastLineStart(buf, end);
+            if(limit == 0 && !eof) {
+                if(end == buf.length) {
+                    buf = Arrays.copyOf(buf, buf.length * 2);
+                }
+                continue;
+            }
+            
+            if(matches == null) {
+                if(indexOf(buf, 0, limit) >= 0) {
+                    return true;
+                }
+            } else {
+                int pos = 0;
+                int lineStart = 0;
+                boolean cr = false;
+                int hit;
+                while((hit = indexOf(buf, pos, limit)) >= 0) {
+                    // Count the lines up to the occurrence
+                    for(int i = pos; i < hit; i++) {
+                        byte b = buf[i];
+                        if(b == '\r' || (b == '\n' && !cr)) {
+                            line++;
+                        }
+                        if(b == '\r' || b == '\n') {
+                            lineStart = i + 1;
+                        }
+                        cr = b == '\r';
+                    }
+                    
+                    int lineEnd = hit + needle.length;
+                    while(lineEnd < limit && buf[lineEnd] != '\n' && buf[lineEnd] != '\r') {
+                        lineEnd++;
+                    }
+                    
+                    matcher.reset(new String(buf, lineStart, lineEnd - lineStart, charset));
+                    while(matcher.find()) {
+                        matches.add(new Match(matcher, line));
+                        found = true;
+                    }
+                    
+                    pos = lineEnd;
+                    lineStart = lineEnd;
+                    cr = false;
+                }
+                line += countLines(buf, pos, limit, cr);
+            }
+            
+            System.arraycopy(buf, limit, buf, 0, end - limit);
+            end -= limit;
+        }
+        
+        return found;
+    }
+    
+    /**
+     * Returns the index of the first occurrence of the needle in {@code buf[from]}
+     * to {@code buf[to - 1]}, or -1 if it does not occur.
+     */
+    private int indexOf(byte[] buf, int from, int to) {
+        int last = needle.length - 1;
+        byte lastByte = needle[last];
+        
+        for(int i = from; i <= to - needle.length; i += shift[buf[i + last] & 0xff]) {
+            if(buf[i + last] == lastByte) {
+                int j = last - 1;
+                while(j >= 0 && buf[i + j] == needle[j]) {
+                    j--;
+                }
+                if(j < 0) {
+                    return i;
+                }
+            }
+        }
+        return -1;
+    }
+    
+    /**
+     * Returns the index at which the last line in {@code buf[0]} to {@code buf[end - 1]}
+     * starts, or 0 if the buffer does not contain a complete line. A trailing {@code \r}
+     * is not regarded as a terminator, as it might be followed by a {@code \n}.
+     */
+    private static int lastLineStart(byte[] buf, int end) {
+        if(end > 0 && buf[end - 1] == '\n') {
+            return end;
+        }
+        for(int i = end - 2; i >= 0; i--) {
+            if(buf[i] == '\n' || buf[i] == '\r') {
+                return i + 1;
+            }
+        }
+        return 0;
+    }
+    
+    /**
+     * Counts the line terminators in {@code buf[from]} to {@code buf[to - 1]}, where
+     * {@code \r\n} counts as one terminator.
+     * @param cr {@code true} if the byte before {@code buf[from]} was a {@code \r}.
+     */
+    private static int countLines(byte[] buf, int from, int to, boolean cr) {
+        int lines = 0;
+        for(int i = from; i < to; i++) {
+            byte b = buf[i];
+            if(b == '\r' || (b == '\n' && !cr)) {
+                lines++;
+            }
+            cr = b == '\r';
+        }
+        return lines;
+    }
+}
@@ -0,0 +1,88 @@
+/* 
+ * Copyright (C) 2018 Wessel Jelle Jongkind.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package cowlite.io.common;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Objects of this class describe the outcome of loading many files at once with
+ * {@link FileDataLoader#load(java.util.Collection, String)}. Every path that was
+ * given is either mapped to a loaded reader or to the error that prevented it
+ * from being loaded, in the order in which the paths were given.
+ *
+ * @version 2026-10-19 (yyyy-mm-dd)
+ */
+public class LoadResult
+{
+    /**
+     * The readers of the files that were loaded, by path.
+     */
+    private final Map<String, FileDataReader> readers;
+
+    /**
+     * The errors of the files that could not be loaded, by path.
+     */
+    private final Map<String, IOException> failures;
+
+    /**
+     * Instantiates a new {@code LoadResult} object.
+     * @param readers The readers of the files that were loaded, by path.
+     * @param failures The errors of the files that could not be loaded, by path.
+     */
+    public LoadResult(Map<String, FileDataReader> readers, Map<String, IOException> failures) {
+        this.readers = Collections.unmodifiableMap(readers);
+        this.failures = Collections.unmodifiableMap(failures);
+    }
+
+    /**
+     * Returns the readers of the files that were loaded. Their contents are in
+     * memory, so they can be used without accessing the files again.
+     * @return The readers of the files that were loaded, by path.
+     */
+    public Map<String, FileDataReader> getReaders() {
+        return readers;
+    }
+
+    /**
+     * Returns the errors of the files that could not be loaded.
+     * @return The errors of the files that could not be loaded, by path.
+     */
+    public Map<String, IOException> getFailures() {
+        return failures;
+    }
+
+    /**
+     * Returns the reader of the file at the given path.
+     * @param path One of the paths that were loaded.
+     * @return The reader of the file, or null if it could not be loaded or was not loaded at all.
+     */
+    public FileDataReader getReader(String path) {
+        return readers.get(path);
+    }
+
+    /**
+     * Returns {@code true} if every file was loaded.
+     * @return {@code true} if none of the files failed to load.
+     */
+    public boolean isComplete() {
+        return failures.isEmpty();
+    }
+}
@@ -0,0 +1,350 @@
+/* 
+ * Copyright (C) 2018 Wessel Jelle Jongkind.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package cowlite.io.common;
+
+import cowlite.io.util.IOMetrics;
+import cowlite.io.util.Match;
+import cowlite.io.util.Metrics;
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.regex.Matcher;
+
+/**
+ * Produces the regex matches in the contents of a file one at a time, so that
+ * callers can decide for every match whether they need more. Depending on where 
+ * the contents come from and whether matching is done across multiple lines, a 
+ * different implementation is used. All of them report their measurements to the
+ * installed {@code Metrics} when they are closed.
+ * 
+ * @version 2026-10-19 (yyyy-mm-dd)
+ */
+abstract class MatchSource implements Closeable
+{
+    private final Metrics metrics = IOMetrics.get();
+    private final long started = metrics.isEnabled() ? System.nanoTime() : 0;
+    
+    /**
+     * The amount of {@code Matcher#find()} calls that were made.
+     */
+    protected long evaluations;
+    
+    /**
+     * The amount of matches that were found.
+     */
+    private long hits;
+    
+    /**
+     * Called when the {@code MatchSource} is closed, or null.
+     */
+    private Runnable onClose;
+    
+    /**
+     * Searches for the next match.
+     * @return {@code true} if a match was found.
+     * @throws IOException When the contents of the file could not be read.
+     */
+    final boolean next() throws IOException {
+        boolean found = find();
+        if(found) {
+            hits++;
+        }
+        return found;
+    }
+    
+    /**
+     * Searches for the next match.
+     * @return {@code true} if a match was found.
+     * @throws IOException When the contents of the file could not be read.
+     */
+    protected abstract boolean find() throws IOException;
+    
+    /**
+     * Creates a {@code Match} of the last match that was found.
+     * @return A {@code Match} of the last match that was found.
+     */
+    abstract Match toMatch();
+    
+    /**
+     * Returns the amount of {@code Matcher#find()} calls that were made.
+     * @return The amount of {@code Matcher#find()} calls that were made.
+     */
+    protected long getEvaluations() {
+        return evaluations;
+    }
+
+    /**
+     * Sets the action that is performed when the {@code MatchSource} is closed,
+     * such as handing its {@code Matcher} back for reuse.
+     * @param onClose The action to perform, or null.
+     * @return This {@code MatchSource}.
+     */
+    final MatchSource onClose(Runnable onClose) {
+        this.onClose = onClose;
+        return this;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if(metrics.isEnabled()) {
+            metrics.recordTime(IOMetrics.READER_MATCH_TIME, System.nanoTime() - started);
+            metrics.increment(IOMetrics.READER_MATCH_EVALUATIONS, getEvaluations());
+            metrics.increment(IOMetrics.READER_MATCH_HITS, hits);
+        }
+        if(onClose != null) {
+            onClose.run();
+        }
+    }
+    
+    /**
+     * Returns a {@code MatchSource} which matches the given lines one by one.
+     * @param lines The lines to match.
+     * @param matcher The {@code Matcher} of the pattern to search for, which is
+     *                reset to the contents that are matched.
+     * @return A {@code MatchSource} for the given lines.
+     */
+    static MatchSource forLines(Iterator<String> lines, Matcher matcher) {
+        return new LineSource(lines, null, matcher);
+    }
+    
+    /**
+     * Returns a {@code MatchSource} which matches the lines that are read by the
+     * given {@code LineReader} one by one. The reader is closed when the {@code MatchSource}
+     * is closed.
+     * @param lines The lines to match.
+     * @param matcher The {@code Matcher} of the pattern to search for, which is
+     *                reset to the contents that are matched.
+     * @return A {@code MatchSource} for the given lines.
+     */
+    static MatchSource forLines(LineReader lines, Matcher matcher) {
+        return new LineSource(null, lines, matcher);
+    }
+    
+    /**
+     * Returns a {@code MatchSource} which only matches the lines with the given
+     * numbers. The line numbers of the matches are those in the full list of lines.
+     * @param lines The lines of the file.
+     * @param candidates The numbers of the lines to match, in ascending order.
+     * @param matcher The {@code Matcher} of the pattern to search for, which is
+     *                reset to the contents that are matched.
+     * @return A {@code MatchSource} for the given lines.
+     * @see TrigramIndex#candidates(String) 
+     */
+    static MatchSource forLines(List<String> lines, int[] candidates, Matcher matcher) {
+        return new CandidateSource(lines, candidates, matcher);
+    }
+    
+    /**
+     * Returns a {@code MatchSource} which matches the given text, which consists
+     * of lines that were pasted together without a separator.
+     * @param text The text to match.
+     * @param cumulativeLengths The cumulative lengths of the lines in the text.
+     * @param matcher The {@code Matcher} of the pattern to search for, which is
+     *                reset to the contents that are matched.
+     * @return A {@code MatchSource} for the given text.
+     */
+    static MatchSource forText(String text, int[] cumulativeLengths, Matcher matcher) {
+        return new TextSource(text, cumulativeLengths, matcher);
+    }
+    
+    /**
+     * Returns a {@code MatchSource} which matches the lines that are read by the 
+     * given {@code LineReader} as if they were pasted together, while only keeping
+     * a bounded window of them in memory. The reader is closed when the {@code MatchSource}
+     * is closed.
+     * @param lines The lines to match.
+     * @param matcher The {@code Matcher} of the pattern to search for, which is
+     *                reset to the contents that are matched.
+     * @param maxSpan The maximum amount of characters that a match may span.
+     * @return A {@code MatchSource} for the given lines.
+     * @see MultilineScanner
+     */
+    static MatchSource forWindow(LineReader lines, Matcher matcher, int maxSpan) {
+        return new WindowSource(lines, matcher, maxSpan);
+    }
+    
+    /**
+     * Matches lines one by one, either from memory or from a {@code LineReader}.
+     */
+    private static final class LineSource extends MatchSource {
+        private final Iterator<String> lines;
+        private final LineReader reader;
+        private final Matcher matcher;
+        
+        /**
+         * The number of the line that the {@code Matcher} is matching.
+         */
+        private int line = -1;
+        
+        /**
+         * {@code true} while the {@code Matcher} has been reset to a line.
+         */
+        private boolean active;
+        
+        private LineSource(Iterator<String> lines, LineReader reader, Matcher matcher) {
+            this.lines = lines;
+            this.reader = reader;
+            this.matcher = matcher;
+        }
+
+        @Override
+        protected boolean find() throws IOException {
+            while(true) {
+                if(active) {
+                    evaluations++;
+                    if(matcher.find()) {
+                        return true;
+                    }
+                }
+                
+                String next;
+                if(reader != null) {
+                    next = reader.readLine();
+                } else {
+                    next = lines.hasNext() ? lines.next() : null;
+                }
+                
+                if(next == null) {
+                    active = false;
+                    return false;
+                }
+                
+                line++;
+                matcher.reset(next);
+                active = true;
+            }
+        }
+
+        @Override
+        Match toMatch() {
+            return new Match(matcher, line);
+        }
+
+        @Override
+        public void close() throws IOException {
+            super.close();
+            if(reader != null) {
+                reader.close();
+            }
+        }
+    }
+    
+    /**
+     * Matches a selection of the lines of a file one by one.
+     */
+    private static final class CandidateSource extends MatchSource {
+        private final List<String> lines;
+        private final int[] candidates;
+        private final Matcher matcher;
+        
+        /**
+         * The index in {@link #candidates} of the line that the {@code Matcher} is matching.
+         */
+        private int candidate = -1;
+        
+        private CandidateSource(List<String> lines, int[] candidates, Matcher matcher) {
+            this.lines = lines;
+            this.candidates = candidates;
+            this.matcher = matcher;
+        }
+
+        @Override
+        protected boolean find() {
+            while(true) {
+                if(candidate >= 0 && candidate < candidates.length) {
+                    evaluations++;
+                    if(matcher.find()) {
+                        return true;
+                    }
+                }
+                
+                if(++candidate >= candidates.length) {
+                    candidate = candidates.length;
+                    return false;
+                }
+                
+                matcher.reset(lines.get(candidates[candidate]));
+            }
+        }
+
+        @Override
+        Match toMatch() {
+            return new Match(matcher, candidates[candidate]);
+        }
+    }
+    
+    /**
+     * Matches the pasted lines of a file that has been loaded.
+     */
+    private static final class TextSource extends MatchSource {
+        private final Matcher matcher;
+        private final int[] cumulativeLengths;
+        
+        private TextSource(String text, int[] cumulativeLengths, Matcher matcher) {
+            this.matcher = matcher.reset(text);
+            this.cumulativeLengths = cumulativeLengths;
+        }
+
+        @Override
+        protected boolean find() {
+            evaluations++;
+            return matcher.find();
+        }
+
+        @Override
+        Match toMatch() {
+            return new Match(matcher, cumulativeLengths);
+        }
+    }
+    
+    /**
+     * Matches the pasted lines of a file that is streamed through a window.
+     */
+    private static final class WindowSource extends MatchSource {
+        private final LineReader reader;
+        private final MultilineScanner scanner;
+        
+        private WindowSource(LineReader reader, Matcher matcher, int maxSpan) {
+            this.reader = reader;
+            this.scanner = new MultilineScanner(reader, matcher, maxSpan);
+        }
+
+        @Override
+        protected boolean find() throws IOException {
+            return scanner.find();
+        }
+
+        @Override
+        Match toMatch() {
+            return scanner.toMatch();
+        }
+
+        @Override
+        protected long getEvaluations() {
+            return scanner.getEvaluations();
+        }
+
+        @Override
+        public void close() throws IOException {
+            super.close();
+            reader.close();
+        }
+    }
+}
@@ -0,0 +1,282 @@
+/* 
+ * Copyright (C) 2018 Wessel Jelle Jongkind.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package cowlite.io.common;
+
+import cowlite.io.util.Match;
+import java.io.IOException;
+import java.nio.CharBuffer;
+import java.util.Arrays;
+import java.util.regex.Matcher;
+
+/**
+ * Finds regex matches in the lines of a file as if all lines were pasted together
+ * without a separator between them (like {@link FileDataReader#getDataString()} does),
+ * while only keeping a bounded window of characters in memory.
+ * <p>
+ * The window holds at least twice the maximum match span. When the {@code Matcher}
+ * runs into the end of the window and more input could change the outcome, the
+ * window slides: everything up to the start of the potential match, or up to the
+ * last {@code maxSpan} characters, is dropped and the window is filled with the 
+ * next lines. Matches that are longer than the maximum span may be cut short, and
+ * look-behinds can not see further back than the start of the window.
+ * 
+ * @version 2026-10-19 (yyyy-mm-dd)
+ */
+final class MultilineScanner
+{
+    /**
+     * The default maximum amount of characters that a match may span.
+     */
+    static final int DEFAULT_MAX_SPAN = 64 * 1024;
+    
+    /**
+     * The amount of characters that are kept in front of the search position when
+     * the window slides, so that {@code ^} does not match at the start of the window
+     * and short look-behinds still work.
+     */
+    private static final int CONTEXT = 16;
+    
+    private final LineReader lines;
+    private final Matcher matcher;
+    private final int maxSpan;
+    private final char[] window;
+    
+    /**
+     * The amount of characters in the window.
+     */
+    private int filled;
+    
+    /**
+     * The offset of the first character of the window in the pasted lines.
+     */
+    private long windowStart;
+    
+    /**
+     * The index in the window from which the next search starts.
+     */
+    private int searchFrom;
+    
+    /**
+     * {@code true} if the {@code Matcher} has to be reset to the window before 
+     * the next search, because the window has changed.
+     */
+    private boolean stale = true;
+    
+    /**
+     * The offset of the last empty match, so that it is not found again after the
+     * window has slid.
+     */
+    private long lastEmpty = -1;
+    
+    /**
+     * The line that is being copied into the window, and the index of the first
+     * character that has not been copied yet.
+     */
+    private String pending;
+    private int pendingOffset;
+    
+    private boolean eof;
+    
+    /**
+     * The number of the first line that overlaps with the window, and the offset
+     * in the pasted lines at which it starts.
+     */
+    private int firstLine;
+    private long firstLineStart;
+    
+    /**
+     * The offsets in the pasted lines at which the lines starting with {@link #firstLine}
+     * end, for all lines that have been copied into the window entirely.
+     */
+    private long[] lineEnds = new long[64];
+    private int lineCount;
+    
+    /**
+     * The amount of {@code Matcher#find()} calls that were made.
+     */
+    private long evaluations;
+    
+    /**
+     * Instantiates a new {@code MultilineScanner} object.
+     * @param lines The lines to search through.
+     * @param matcher The {@code Matcher} of the pattern to search for, which is
+     *                reset to the window.
+     * @param maxSpan The maximum amount of characters that a match may span.
+     */
+    MultilineScanner(LineReader lines, Matcher matcher, int maxSpan) {
+        this.lines = lines;
+        this.maxSpan = maxSpan;
+        this.window = new char[2 * maxSpan + CONTEXT];
+        this.matcher = matcher;
+    }
+    
+    /**
+     * Searches for the next match. When a match is found, the {@code Matcher} returned
+     * by {@link #matcher()} holds the match, relative to the start of the window.
+     * @return {@code true} if a match was found.
+     * @throws IOException When the lines could not be read.
+     */
+    boolean find() throws IOException {
+        while(true) {
+            if(stale) {
+                fill();
+                matcher.reset(CharBuffer.wrap(window, 0, filled));
+                matcher.useTransparentBounds(true);
+                matcher.useAnchoringBounds(false);
+                matcher.region(searchFrom, filled);
+                stale = false;
+            }
+            
+            evaluations++;
+            if(!matcher.find()) {
+                if(eof) {
+                    return false;
+                }
+                
+                // Only keep the characters at which a match could still start.
+                slide(matcher.hitEnd() ? Math.max(searchFrom, filled - maxSpan) : filled);
+                continue;
+            }
+            
+            int start = matcher.start();
+            if(matcher.end() == start && windowStart + start == lastEmpty) {
+                // This empty match was already found before the window slid.
+                if(start == filled) {
+                    if(eof) {
+                        return false;
+                    }
+                    slide(filled);
+                } else {
+                    searchFrom = start + 1;
+                    stale = true;
+                }
+                continue;
+            }
+            
+            /*
+                When the Matcher ran into the end of the window, more input could
+                lead to a longer match or to a match at an earlier position that 
+                failed for now. Only accept the match if more input can not change
+                it, or if it would grow beyond the maximum span.
+            */
+            int limit = filled - maxSpan;
+            if(matcher.hitEnd() && !eof && start >= limit) {
+                slide(Math.min(start, Math.max(searchFrom, limit)));
+                continue;
+            }
+            
+            searchFrom = matcher.end();
+            if(matcher.end() == start) {
+                lastEmpty = windowStart + start;
+            }
+            return true;
+        }
+    }
+    
+    /**
+     * Returns the {@code Matcher} which holds the last match that was found. The
+     * indices of the {@code Matcher} are relative to the start of the window.
+     * @return The {@code Matcher} which holds the last match.
+     */
+    Matcher matcher() {
+        return matcher;
+    }
+    
+    /**
+     * Creates a {@code Match} of the last match that was found, with the line 
+     * numbers and the indices within those lines at which the match and its
+     * groups start and end.
+     * @return A {@code Match} of the last match that was found.
+     */
+    Match toMatch() {
+        return new Match(matcher, windowStart, firstLine, firstLineStart, lineEnds, lineCount);
+    }
+    
+    /**
+     * Returns the offset of the first character of the window in the pasted lines.
+     * @return The offset of the first character of the window in the pasted lines.
+     */
+    long getWindowStart() {
+        return windowStart;
+    }
+    
+    /**
+     * Returns the amount of {@code Matcher#find()} calls that were made.
+     * @return The amount of {@code Matcher#find()} calls that were made.
+     */
+    long getEvaluations() {
+        return evaluations;
+    }
+    
+    /**
+     * Continues the search at {@code from} and drops the characters in front of
+     * it (save for a bit of context) from the window, so that the window can be
+     * filled up again.
+     */
+    private void slide(int from) {
+        int drop = Math.max(0, from - CONTEXT);
+        
+        System.arraycopy(window, drop, window, 0, filled - drop);
+        filled -= drop;
+        windowStart += drop;
+        searchFrom = from - drop;
+        stale = true;
+        
+        // Forget the lines that ended before the window.
+        int before = 0;
+        while(before < lineCount && lineEnds[before] < windowStart) {
+            before++;
+        }
+        if(before > 0) {
+            firstLine += before;
+            firstLineStart = lineEnds[before - 1];
+            lineCount -= before;
+            System.arraycopy(lineEnds, before, lineEnds, 0, lineCount);
+        }
+    }
+    
+    /**
+     * Copies lines into the window until it is full or all lines have been read.
+     */
+    private void fill() throws IOException {
+        while(filled < window.length && !eof) {
+            if(pending == null) {
+                pending = lines.readLine();
+                pendingOffset = 0;
+                if(pending == null) {
+                    eof = true;
+                    break;
+                }
+            }
+            
+            int n = Math.min(pending.length() - pendingOffset, window.length - filled);
+            pending.getChars(pendingOffset, pendingOffset + n, window, filled);
+            filled += n;
+            pendingOffset += n;
+            
+            if(pendingOffset == pending.length()) {
+                pending = null;
+                if(lineCount == lineEnds.length) {
+                    lineEnds = Arrays.copyOf(lineEnds, lineCount * 2);
+                }
+                lineEnds[lineCount++] = windowStart + filled;
+            }
+        }
+    }
+}
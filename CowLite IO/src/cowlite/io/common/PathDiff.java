@@ -0,0 +1,218 @@
+/* 
+ * Copyright (C) 2018 Wessel Jelle Jongkind.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package cowlite.io.common;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+/**
+ * Compares two trees that were stored with {@link PathMonitor#storeSorted(File)}
+ * without loading either of them into memory. Because both files list their 
+ * entries in the same sorted order, they are read side by side in a single pass
+ * and only the current line of each file is kept in memory.
+ * <p>
+ * The results are the same as those of {@link PathMonitor#compareTo(PathMonitor, java.util.List, java.util.List)},
+ * except that entries that differ in type or size are reported separately as changed.
+ * Like {@code compareTo}, only the topmost entry of a missing or superfluous 
+ * subtree is reported.
+ * 
+ * <pre><i>
+ *      lastNight.storeSorted(new File("monday.tree"));
+ *      tonight.storeSorted(new File("tuesday.tree"));
+ *      
+ *      PathDiff.diff(new File("monday.tree"), new File("tuesday.tree"), listener);
+ * </i></pre>
+ * 
+ * @version 2026-10-19 (yyyy-mm-dd)
+ */
+public final class PathDiff
+{
+    /**
+     * Receives the differences that are found by {@link PathDiff#diff(File, File, Listener)}.
+     * The paths of the entries are relative to the roots of the trees.
+     */
+    public interface Listener {
+        /**
+         * Called for an entry that is present in the other tree but not in this tree.
+         * @param other The entry in the other tree.
+         */
+        void onMissing(PathJournal.Entry other);
+        
+        /**
+         * Called for an entry that is present in this tree but not in the other tree.
+         * @param mine The entry in this tree.
+         */
+        void onGarbage(PathJournal.Entry mine);
+        
+        /**
+         * Called for an entry that is present in both trees, but differs in type or size.
+         * @param mine The entry in this tree.
+         * @param other The entry in the other tree.
+         */
+        void onChanged(PathJournal.Entry mine, PathJournal.Entry other);
+    }
+    
+    private PathDiff() {
+    }
+    
+    /**
+     * Compares the tree in {@code mine} to the tree in {@code other}.
+     * 
+     * @param mine The file to which this tree was stored with {@link PathMonitor#storeSorted(File)}.
+     * @param other The file to which the other tree was stored with {@link PathMonitor#storeSorted(File)}.
+     * @param listener The listener that receives the differences.
+     * @throws IOException When one of the files could not be read, is malformed or is not sorted.
+     */
+    public static void diff(File mine, File other, Listener listener) throws IOException {
+        try(Cursor a = new Cursor(mine); Cursor b = new Cursor(other)) {
+            a.next();
+            b.next();
+            
+            while(a.path != null || b.path != null) {
+                int c = a.path == null ? 1 : b.path == null ? -1 : compare(a.path, b.path);
+                if(c < 0) {
+                    listener.onGarbage(a.entry());
+                    a.skipSubtree();
+                } else if(c > 0) {
+                    listener.onMissing(b.entry());
+                    b.skipSubtree();
+                } else {
+                    PathJournal.Entry x = a.entry();
+                    PathJournal.Entry y = b.entry();
+                    if(x.isDirectory() != y.isDirectory() || x.getSize() != y.getSize()) {
+                        listener.onChanged(x, y);
+                    }
+                    a.next();
+                    b.next();
+                }
+            }
+        }
+    }
+    
+    /**
+     * Compares two relative paths in the order in which {@link PathMonitor#storeSorted(File)}
+     * writes them: name by name, where a directory comes before everything in it.
+     * This is the order of the strings when the separator is smaller than any
+     * other character.
+     * @param a The first relative path.
+     * @param b The second relative path.
+     * @return A negative number, zero or a positive number if {@code a} comes 
+     * before, at the same position as or after {@code b}.
+     */
+    static int compare(String a, String b) {
+        int n = Math.min(a.length(), b.length());
+        for(int i = 0; i < n; i++) {
+            char x = a.charAt(i);
+            char y = b.charAt(i);
+            if(x != y) {
+                if(x == File.separatorChar) {
+                    return -1;
+                }
+                if(y == File.separatorChar) {
+                    return 1;
+                }
+                return x - y;
+            }
+        }
+        return a.length() - b.length();
+    }
+    
+    /**
+     * Reads the entries of a sorted file one by one.
+     */
+    private static final class Cursor implements AutoCloseable {
+        private final File file;
+        private final BufferedReader in;
+        
+        /**
+         * The current line, or null at the end of the file.
+         */
+        private String line;
+        
+        /**
+         * The relative path of the current line, or null at the end of the file.
+         */
+        private String path;
+        
+        private Cursor(File file) throws IOException {
+            this.file = file;
+            this.in = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8);
+            
+            // The header lines are not needed for the comparison.
+            do {
+                line = in.readLine();
+                if(PathFilter.HEADER_END.equals(line)) {
+                    line = in.readLine();
+                    break;
+                }
+            } while(line != null && line.startsWith(PathFilter.HEADER_PREFIX));
+        }
+        
+        /**
+         * Moves to the next entry.
+         */
+        private void next() throws IOException {
+            if(path != null) {
+                line = in.readLine();
+            }
+            if(line == null) {
+                path = null;
+                return;
+            }
+            
+            String previous = path;
+            path = PathMonitor.recordPath(line);
+            if(path == null) {
+                throw new IOException("Malformed line in " + file + ": " + line);
+            }
+            if(previous != null && compare(previous, path) >= 0) {
+                throw new IOException(file + " is not sorted at: " + line);
+            }
+        }
+        
+        /**
+         * Moves past the current entry and all entries below it.
+         */
+        private void skipSubtree() throws IOException {
+            String prefix = path + File.separatorChar;
+            do {
+                next();
+            } while(path != null && path.startsWith(prefix));
+        }
+        
+        /**
+         * Parses the current entry.
+         */
+        private PathJournal.Entry entry() throws IOException {
+            try {
+                return PathJournal.Entry.parse(PathJournal.Type.ADDED, 0, line);
+            } catch(IllegalArgumentException e) {
+                throw new IOException("Malformed line in " + file + ": " + line, e);
+            }
+        }
+        
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+}
@@ -0,0 +1,257 @@
+/* 
+ * Copyright (C) 2018 Wessel Jelle Jongkind.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package cowlite.io.common;
+
+import java.io.PrintWriter;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Rules that decide which files and directories a {@link PathMonitor} monitors.
+ * Excluded entries and entries below the maximum depth are skipped as soon as 
+ * they are listed, so excluded directories are never stat'ed or listed at all.
+ * Include rules and size limits only apply to files, and are checked once the
+ * attributes of the file have been read.
+ * <p>
+ * Globs that contain a {@code /} are matched against the path relative to the
+ * monitored root, such as {@code "build/**"}. An exclude glob that ends with
+ * {@code /**} also excludes the directory itself, so {@code "build/**"} keeps
+ * {@code build} from being listed, just like {@code "build"}. All other globs are matched against
+ * the name of the file or directory, such as {@code "node_modules"} or {@code "*.log"}.
+ * 
+ * <pre><i>
+ *      PathFilter filter = new PathFilter()
+ *              .exclude(".git")
+ *              .exclude("node_modules")
+ *              .include("*.java")
+ *              .setMaxDepth(8);
+ *      PathMonitor monitor = new PathMonitor(Paths.get("project"), filter);
+ * </i></pre>
+ * 
+ * Rules should not be changed while the monitor is being updated. Entries that
+ * become excluded by a change of the rules are reported as deleted by the next update.
+ * 
+ * @version 2026-10-19 (yyyy-mm-dd)
+ */
+public class PathFilter
+{
+    /**
+     * The prefix of the lines in which the rules are stored, see {@link PathMonitor#store(java.io.File)}.
+     */
+    static final String HEADER_PREFIX = "#";
+    
+    /**
+     * The line that ends the header lines. Entries may start with {@link #HEADER_PREFIX}
+     * as well, so files that were stored before this line was written treat all 
+     * leading lines that start with it as headers.
+     */
+    static final String HEADER_END = HEADER_PREFIX + "end";
+    
+    private final List<Glob> excludes = new ArrayList<>();
+    private final List<Glob> includes = new ArrayList<>();
+    private int maxDepth = Integer.MAX_VALUE;
+    private long minSize = 0;
+    private long maxSize = Long.MAX_VALUE;
+    
+    /**
+     * Excludes the files and directories that match the given glob, including
+     * everything below the directories. A glob that ends with {@code /**} also
+     * matches the directory in front of it.
+     * @param glob The glob.
+     * @return This {@code PathFilter}.
+     * @see java.nio.file.FileSystem#getPathMatcher(String) 
+     */
+    public PathFilter exclude(String glob) {
+        excludes.add(new Glob(glob, true));
+        return this;
+    }
+    
+    /**
+     * Only includes the files that match the given glob, or one of the other globs
+     * that are included. Directories are always included unless they are excluded.
+     * @param glob The glob.
+     * @return This {@code PathFilter}.
+     */
+    public PathFilter include(String glob) {
+        includes.add(new Glob(glob, false));
+        return this;
+    }
+    
+    /**
+     * Sets the maximum depth of the entries that are monitored. The children of
+     * the root have depth 1. Directories at the maximum depth are monitored, but
+     * not listed.
+     * @param maxDepth The maximum depth.
+     * @return This {@code PathFilter}.
+     * @throws IllegalArgumentException When {@code maxDepth} is negative.
+     */
+    public PathFilter setMaxDepth(int maxDepth) throws IllegalArgumentException {
+        if(maxDepth < 0) {
+            throw new IllegalArgumentException("Invalid maximum depth: " + maxDepth);
+        }
+        this.maxDepth = maxDepth;
+        return this;
+    }
+    
+    /**
+     * Only includes files of which the size lies within the given bounds.
+     * @param minSize The minimum size in bytes.
+     * @param maxSize The maximum size in bytes.
+     * @return This {@code PathFilter}.
+     * @throws IllegalArgumentException When {@code minSize} is negative or larger than {@code maxSize}.
+     */
+    public PathFilter setSizeLimits(long minSize, long maxSize) throws IllegalArgumentException {
+        if(minSize < 0 || minSize > maxSize) {
+            throw new IllegalArgumentException("Invalid size limits: " + minSize + " - " + maxSize);
+        }
+        this.minSize = minSize;
+        this.maxSize = maxSize;
+        return this;
+    }
+    
+    /**
+     * Returns the maximum depth of the entries that are monitored.
+     * @return The maximum depth of the entries that are monitored.
+     */
+    public int getMaxDepth() {
+        return maxDepth;
+    }
+    
+    /**
+     * Returns {@code true} if the entry at the given path is excluded before its
+     * attributes are read, because of its depth or an exclude rule.
+     * @param relative The path of the entry relative to the monitored root.
+     * @return {@code true} if the entry is excluded.
+     */
+    public boolean excludes(Path relative) {
+        if(relative.getNameCount() > maxDepth) {
+            return true;
+        }
+        for(Glob glob : excludes) {
+            if(glob.matches(relative)) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * Returns {@code true} if the file at the given path, which is not excluded, 
+     * passes the include rules and size limits.
+     * @param relative The path of the file relative to the monitored root.
+     * @param size The size of the file in bytes.
+     * @return {@code true} if the file is included.
+     */
+    public boolean includesFile(Path relative, long size) {
+        if(size < minSize || size > maxSize) {
+            return false;
+        }
+        if(includes.isEmpty()) {
+            return true;
+        }
+        for(Glob glob : includes) {
+            if(glob.matches(relative)) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * Writes the rules as header lines that start with {@link #HEADER_PREFIX}.
+     * @param out The writer to which the rules are written.
+     */
+    void store(PrintWriter out) {
+        for(Glob glob : excludes) {
+            out.println(HEADER_PREFIX + "exclude=" + glob.pattern);
+        }
+        for(Glob glob : includes) {
+            out.println(HEADER_PREFIX + "include=" + glob.pattern);
+        }
+        if(maxDepth != Integer.MAX_VALUE) {
+            out.println(HEADER_PREFIX + "maxDepth=" + maxDepth);
+        }
+        if(minSize != 0 || maxSize != Long.MAX_VALUE) {
+            out.println(HEADER_PREFIX + "size=" + minSize + "-" + maxSize);
+        }
+    }
+    
+    /**
+     * Applies a header line that was written by {@link #store(PrintWriter)}.
+     * @param line The header line.
+     * @return {@code true} if the line contained a rule.
+     */
+    boolean parse(String line) {
+        if(!line.startsWith(HEADER_PREFIX)) {
+            return false;
+        }
+        
+        int eq = line.indexOf('=');
+        if(eq < 0) {
+            return false;
+        }
+        String key = line.substring(HEADER_PREFIX.length(), eq);
+        String value = line.substring(eq + 1);
+        
+        switch(key) {
+            case "exclude":
+                exclude(value);
+                return true;
+            case "include":
+                include(value);
+                return true;
+            case "maxDepth":
+                setMaxDepth(Integer.parseInt(value));
+                return true;
+            case "size":
+                int dash = value.indexOf('-');
+                setSizeLimits(Long.parseLong(value.substring(0, dash)), Long.parseLong(value.substring(dash + 1)));
+                return true;
+            default:
+                return false;
+        }
+    }
+    
+    /**
+     * A glob that is matched against either the relative path or the name of an entry.
+     */
+    private static final class Glob {
+        private final String pattern;
+        private final PathMatcher matcher;
+        private final PathMatcher base;
+        private final boolean byName;
+        
+        private Glob(String pattern, boolean matchBase) {
+            this.pattern = pattern;
+            this.matcher = FileSystems.getDefault().getPathMatcher("glob:" + pattern);
+            this.base = matchBase && pattern.endsWith("/**") && pattern.length() > 3
+                    ? FileSystems.getDefault().getPathMatcher("glob:" + pattern.substring(0, pattern.length() - 3))
+                    : null;
+            this.byName = pattern.indexOf('/') < 0;
+        }
+        
+        private boolean matches(Path relative) {
+            Path target = byName ? relative.getFileName() : relative;
+            return target != null && (matcher.matches(target) || base != null && base.matches(target));
+        }
+    }
+}
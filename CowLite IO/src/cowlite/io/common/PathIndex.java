@@ -0,0 +1,134 @@
+/* 
+ * Copyright (C) 2018 Wessel Jelle Jongkind.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package cowlite.io.common;
+
+import java.nio.file.Path;
+
+/**
+ * An index of all {@link PathMonitor}s of a tree by their full path. The monitors
+ * are stored in an open addressing table that is kept at most half full, so an 
+ * entry only costs about two references and no key or entry objects: the path of
+ * a monitor is its own key.
+ * 
+ * @version 2026-10-19 (yyyy-mm-dd)
+ */
+final class PathIndex
+{
+    private PathMonitor[] table = new PathMonitor[16];
+    private int size;
+    
+    /**
+     * Adds the given monitor to the index, replacing any monitor with the same path.
+     * @param monitor The monitor to add.
+     */
+    void add(PathMonitor monitor) {
+        if((size + 1) * 2 > table.length) {
+            resize(table.length * 2);
+        }
+        
+        Path file = monitor.getFile();
+        int mask = table.length - 1;
+        for(int i = slot(file, mask); ; i = (i + 1) & mask) {
+            PathMonitor m = table[i];
+            if(m == null) {
+                table[i] = monitor;
+                size++;
+                return;
+            }
+            if(m.getFile().equals(file)) {
+                table[i] = monitor;
+                return;
+            }
+        }
+    }
+    
+    /**
+     * Returns the monitor of the given path.
+     * @param file The full path of the monitor.
+     * @return The monitor of the given path, or null if it is not indexed.
+     */
+    PathMonitor get(Path file) {
+        PathMonitor[] t = table;
+        int mask = t.length - 1;
+        for(int i = slot(file, mask); ; i = (i + 1) & mask) {
+            PathMonitor m = t[i];
+            if(m == null || m.getFile().equals(file)) {
+                return m;
+            }
+        }
+    }
+    
+    /**
+     * Removes the given monitor from the index, if it is indexed.
+     * @param monitor The monitor to remove.
+     */
+    void remove(PathMonitor monitor) {
+        int mask = table.length - 1;
+        int i = slot(monitor.getFile(), mask);
+        while(table[i] != monitor) {
+            if(table[i] == null) {
+                return;
+            }
+            i = (i + 1) & mask;
+        }
+        
+        /*
+            Shift the following entries of the probe sequence back into the freed
+            slot, so that lookups never stop early at a hole.
+        */
+        table[i] = null;
+        size--;
+        for(int j = (i + 1) & mask; table[j] != null; j = (j + 1) & mask) {
+            int home = slot(table[j].getFile(), mask);
+            if(((j - home) & mask) >= ((j - i) & mask)) {
+                table[i] = table[j];
+                table[j] = null;
+                i = j;
+            }
+        }
+    }
+    
+    /**
+     * Returns the amount of indexed monitors.
+     * @return The amount of indexed monitors.
+     */
+    int size() {
+        return size;
+    }
+    
+    private void resize(int length) {
+        PathMonitor[] old = table;
+        table = new PathMonitor[length];
+        int mask = length - 1;
+        for(PathMonitor m : old) {
+            if(m != null) {
+                int i = slot(m.getFile(), mask);
+                while(table[i] != null) {
+                    i = (i + 1) & mask;
+                }
+                table[i] = m;
+            }
+        }
+    }
+    
+    private static int slot(Path file, int mask) {
+        int h = file.hashCode() * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & mask;
+    }
+}
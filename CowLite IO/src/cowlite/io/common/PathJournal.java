@@ -0,0 +1,684 @@
+/* 
+ * Copyright (C) 2018 Wessel Jelle Jongkind.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package cowlite.io.common;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * An append-only journal of the changes that a {@link PathMonitor} finds. Once
+ * a journal is attached to a monitor, every {@link PathMonitor#update(List, List, List)}
+ * that finds changes appends them to the journal as a single batch, so that a
+ * checkpoint costs I/O in proportion to the amount of changes instead of the size
+ * of the tree. When the journal grows larger than the compaction threshold, the
+ * whole tree is stored to the snapshot file and the journal is emptied.
+ * <p>
+ * A monitor is recovered by loading the snapshot and replaying the journal on it,
+ * see {@link #recover(File, File)}. Other processes can follow the changes with
+ * {@link #read(File, long, Consumer)}, which returns the offset from which the 
+ * next call can resume. Offsets keep increasing across compactions, so an offset
+ * from before a compaction is recognized: {@code read} then returns -1, and the
+ * process has to load the snapshot again and continue at {@link #readOffset(File)}.
+ * 
+ * <pre><i>
+ *      File snapshot = new File("tree.snapshot");
+ *      File log = new File("tree.journal");
+ *      PathMonitor monitor = snapshot.exists() 
+ *              ? PathJournal.recover(snapshot, log) 
+ *              : new PathMonitor(Paths.get("data"));
+ *      PathJournal journal = new PathJournal(monitor, snapshot, log);
+ *      
+ *      // Every update now appends its changes to tree.journal.
+ *      monitor.update(null, null, null);
+ * 
+ *      // Another process follows the changes.
+ *      long offset = PathJournal.readOffset(snapshot);
+ *      PathMonitor copy = PathMonitor.decompile(snapshot);
+ *      offset = PathJournal.read(log, offset, entry -&#62; process(entry));
+ *      if(offset &#60; 0) {
+ *          // The journal was compacted, start over from the snapshot.
+ *      }
+ * </i></pre>
+ * 
+ * <h1>Format</h1>
+ * The journal is a UTF-8 text file that starts with a line {@code O||[offset]},
+ * which holds the offset of the first batch in the journal; the snapshot holds 
+ * the same offset in its {@code #offset=} header. Each compaction raises it by 
+ * the size of the journal that was compacted. Every batch starts with a line
+ * {@code B||[sequence]} and ends with a line {@code C||[sequence]}. Batches of 
+ * which the last line is missing, because the process died while the batch was 
+ * written, are ignored and removed when the journal is opened again. In between, 
+ * every line describes a deleted ({@code D||[path]}), added ({@code A||[entry]}) 
+ * or updated ({@code U||[entry]}) file or directory, where the entry is formatted
+ * in the same way as the lines written by {@link PathMonitor#store(File)}.
+ * 
+ * @version 2026-10-19 (yyyy-mm-dd)
+ */
+public class PathJournal implements Closeable
+{
+    /**
+     * The default size in bytes above which the journal is compacted.
+     */
+    public static final long DEFAULT_COMPACTION_THRESHOLD = 64L * 1024 * 1024;
+    
+    /**
+     * The header line of a snapshot which contains the sequence of the last batch
+     * that is contained in the snapshot.
+     */
+    private static final String SEQUENCE_HEADER = PathFilter.HEADER_PREFIX + "sequence=";
+    
+    /**
+     * The header line of a snapshot which contains the offset in the journal at
+     * which the batches that are not contained in the snapshot start.
+     */
+    private static final String OFFSET_HEADER = PathFilter.HEADER_PREFIX + "offset=";
+    
+    /**
+     * The code of the first line of a journal, which contains its offset.
+     */
+    private static final char OFFSET_CODE = 'O';
+    
+    private static final String SEPARATOR = "||";
+    
+    /**
+     * The type of change that an {@link Entry} describes.
+     */
+    public enum Type {
+        ADDED('A'), UPDATED('U'), DELETED('D');
+        
+        private final char code;
+        
+        private Type(char code) {
+            this.code = code;
+        }
+        
+        private static Type of(char code) {
+            for(Type type : values()) {
+                if(type.code == code) {
+                    return type;
+                }
+            }
+            return null;
+        }
+    }
+    
+    private final PathMonitor monitor;
+    private final File snapshot;
+    private final File journal;
+    private final FileChannel channel;
+    
+    /**
+     * The sequence of the last batch that was written.
+     */
+    private long sequence;
+    
+    /**
+     * The offset of the first batch in the journal.
+     */
+    private long first;
+    
+    /**
+     * The length in bytes of the first line of the journal, which contains {@link #first}.
+     */
+    private long startLength;
+    
+    /**
+     * {@code true} when a batch could not be written, so that the journal lacks
+     * changes that the monitor has. The next batch then compacts the journal instead.
+     */
+    private boolean stale;
+    
+    private long compactionThreshold = DEFAULT_COMPACTION_THRESHOLD;
+    private boolean sync = true;
+    
+    /**
+     * Opens the journal and attaches it to the given monitor. The monitor should
+     * either have been recovered from the given files with {@link #recover(File, File)},
+     * or the snapshot should not exist yet, in which case the monitor is stored to
+     * it right away. A batch at the end of the journal that was not written 
+     * completely is removed.
+     * 
+     * @param monitor The monitor of which the changes are journaled.
+     * @param snapshot The file in which the whole tree is stored on compaction.
+     * @param journal The file to which the changes are appended.
+     * @throws IOException When the journal could not be opened.
+     */
+    public PathJournal(PathMonitor monitor, File snapshot, File journal) throws IOException {
+        this.monitor = monitor;
+        this.snapshot = snapshot;
+        this.journal = journal;
+        this.channel = FileChannel.open(journal.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        
+        try {
+            long[] last = { readHeader(snapshot, SEQUENCE_HEADER) };
+            long[] start = readStart(journal);
+            long end = read(journal, start[0], entry -> last[0] = Math.max(last[0], entry.getSequence()));
+            this.sequence = last[0];
+            
+            long offset = readHeader(snapshot, OFFSET_HEADER);
+            if(start[0] < offset) {
+                // A compaction was interrupted after the snapshot was replaced; all batches are in the snapshot.
+                channel.truncate(0);
+                writeStart(offset);
+            } else {
+                this.first = start[0];
+                this.startLength = start[1];
+                channel.truncate(end - first + startLength);
+                channel.position(end - first + startLength);
+            }
+            
+            if(!snapshot.exists()) {
+                compact();
+            }
+        } catch(IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+        
+        monitor.setJournal(this);
+    }
+    
+    /**
+     * Loads the snapshot and replays all batches of the journal that are not
+     * contained in the snapshot yet.
+     * 
+     * @param snapshot The snapshot, as written by {@link #compact()} or {@link PathMonitor#store(File)}.
+     * @param journal The journal, which may not exist.
+     * @return The recovered monitor.
+     * @throws IOException When the snapshot or journal could not be read.
+     */
+    public static PathMonitor recover(File snapshot, File journal) throws IOException {
+        PathMonitor monitor = PathMonitor.decompile(snapshot);
+        long base = readHeader(snapshot, SEQUENCE_HEADER);
+        
+        // The whole journal is read, since it may predate the snapshot when a compaction was interrupted.
+        if(journal.exists()) {
+            read(journal, readStart(journal)[0], entry -> {
+                if(entry.getSequence() > base) {
+                    monitor.apply(entry);
+                }
+            });
+            monitor.rollup();
+        }
+        return monitor;
+    }
+    
+    /**
+     * Reads the complete batches of the journal, starting at the given offset,
+     * and passes their entries to the consumer in order. 
+     * 
+     * @param journal The journal.
+     * @param offset The offset at which reading starts, which is the offset read
+     * from the snapshot by {@link #readOffset(File)} or an offset returned by an
+     * earlier call.
+     * @param consumer The consumer of the entries.
+     * @return The offset after the last complete batch, from which the next call 
+     * can resume, or -1 if the journal has been compacted since the given offset
+     * was obtained. The snapshot then has to be loaded again.
+     * @throws IOException When the journal could not be read or is malformed.
+     */
+    public static long read(File journal, long offset, Consumer<Entry> consumer) throws IOException {
+        // An empty journal can not tell whether the offset is stale yet.
+        long length = journal.length();
+        if(length == 0) {
+            return offset;
+        }
+        
+        try(InputStream in = new BufferedInputStream(new FileInputStream(journal))) {
+            long[] start = readStart(in);
+            if(offset < start[0] || offset > start[0] + length - start[1]) {
+                return -1;
+            }
+            
+            long skipped = 0;
+            while(skipped < offset - start[0]) {
+                long n = in.skip(offset - start[0] - skipped);
+                if(n <= 0) {
+                    return offset;
+                }
+                skipped += n;
+            }
+            
+            long position = offset;
+            long committed = offset;
+            List<Entry> batch = null;
+            long batchSequence = 0;
+            ByteArrayOutputStream line = new ByteArrayOutputStream(256);
+            
+            for(int b = in.read(); b != -1; b = in.read()) {
+                position++;
+                if(b != '\n') {
+                    line.write(b);
+                    continue;
+                }
+                
+                String text = new String(line.toByteArray(), StandardCharsets.UTF_8);
+                line.reset();
+                
+                if(text.length() < 3 || !text.startsWith(SEPARATOR, 1)) {
+                    throw new IOException("Malformed journal line at offset " + (position - 1) + ": " + text);
+                }
+                String value = text.substring(3);
+                char code = text.charAt(0);
+                
+                if(code == 'B') {
+                    batch = new ArrayList<>();
+                    batchSequence = Long.parseLong(value);
+                } else if(code == 'C') {
+                    if(batch == null) {
+                        throw new IOException("Commit without batch at offset " + (position - 1));
+                    }
+                    batch.forEach(consumer);
+                    batch = null;
+                    committed = position;
+                } else if(batch != null && Type.of(code) != null) {
+                    batch.add(Entry.parse(Type.of(code), batchSequence, value));
+                } else {
+                    throw new IOException("Malformed journal line at offset " + (position - 1) + ": " + text);
+                }
+            }
+            
+            return committed;
+        } catch(IllegalArgumentException e) {
+            throw new IOException("Malformed journal " + journal, e);
+        }
+    }
+    
+    /**
+     * Appends the changes of an update as a single batch. Nothing is written if
+     * there are no changes. When an earlier batch could not be written, the whole
+     * tree is stored to the snapshot instead, since the journal can not be replayed
+     * past the missing batch.
+     * 
+     * @param deleted The deleted monitors.
+     * @param added The added monitors.
+     * @param updated The updated monitors.
+     * @throws IOException When the batch could not be written.
+     */
+    void append(List<PathMonitor> deleted, List<PathMonitor> added, List<PathMonitor> updated) throws IOException {
+        if(deleted.isEmpty() && added.isEmpty() && updated.isEmpty()) {
+            return;
+        }
+        
+        long next = sequence + 1;
+        if(stale) {
+            sequence = next;
+            compact();
+            stale = false;
+            return;
+        }
+        
+        StringBuilder sb = new StringBuilder(64 * (deleted.size() + added.size() + updated.size() + 2));
+        sb.append('B').append(SEPARATOR).append(next).append('\n');
+        for(PathMonitor m : deleted) {
+            sb.append(Type.DELETED.code).append(SEPARATOR).append(m.getFile()).append('\n');
+        }
+        
+        // Parents have to be replayed before their children.
+        List<PathMonitor> sorted = new ArrayList<>(added);
+        sorted.sort(Comparator.comparingInt(m -> m.getFile().getNameCount()));
+        for(PathMonitor m : sorted) {
+            sb.append(Type.ADDED.code).append(SEPARATOR).append(m.toRecord()).append('\n');
+        }
+        for(PathMonitor m : updated) {
+            sb.append(Type.UPDATED.code).append(SEPARATOR).append(m.toRecord()).append('\n');
+        }
+        sb.append('C').append(SEPARATOR).append(next).append('\n');
+        
+        // The batch is written at once, so that a crash leaves at most one incomplete batch.
+        ByteBuffer buffer = StandardCharsets.UTF_8.encode(CharBuffer.wrap(sb));
+        try {
+            while(buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            if(sync) {
+                channel.force(false);
+            }
+        } catch(IOException | RuntimeException e) {
+            stale = true;
+            throw e;
+        }
+        sequence = next;
+        
+        if(channel.size() > compactionThreshold) {
+            compact();
+        }
+    }
+    
+    /**
+     * Stores the whole tree to the snapshot and empties the journal. The snapshot 
+     * is written to a temporary file first and then moved over the old snapshot,
+     * so that a crash leaves either the old or the new snapshot.
+     * 
+     * @throws IOException When the snapshot could not be written.
+     */
+    public void compact() throws IOException {
+        File temp = new File(snapshot.getPath() + ".tmp");
+        long next = getOffset();
+        try(FileOutputStream fos = new FileOutputStream(temp)) {
+            PrintWriter out = new PrintWriter(new OutputStreamWriter(fos, StandardCharsets.UTF_8));
+            out.println(SEQUENCE_HEADER + sequence);
+            out.println(OFFSET_HEADER + next);
+            monitor.storeAll(out);
+            out.flush();
+            if(out.checkError()) {
+                throw new IOException("Could not write " + temp);
+            }
+            if(sync) {
+                fos.getFD().sync();
+            }
+        }
+        Files.move(temp.toPath(), snapshot.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        
+        channel.truncate(0);
+        writeStart(next);
+        if(sync) {
+            channel.force(true);
+        }
+    }
+    
+    /**
+     * Writes the first line of the empty journal, which holds the given offset.
+     */
+    private void writeStart(long offset) throws IOException {
+        ByteBuffer buffer = StandardCharsets.UTF_8.encode(OFFSET_CODE + SEPARATOR + offset + "\n");
+        startLength = buffer.remaining();
+        while(buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        first = offset;
+    }
+    
+    /**
+     * Sets the size in bytes above which the journal is compacted after a batch
+     * has been appended. 
+     * @param compactionThreshold The size in bytes above which the journal is compacted.
+     * @throws IllegalArgumentException When {@code compactionThreshold} is negative.
+     */
+    public void setCompactionThreshold(long compactionThreshold) throws IllegalArgumentException {
+        if(compactionThreshold < 0) {
+            throw new IllegalArgumentException("Invalid compaction threshold: " + compactionThreshold);
+        }
+        this.compactionThreshold = compactionThreshold;
+    }
+    
+    /**
+     * Sets whether every batch and snapshot is forced to the storage device before
+     * the update returns. This is enabled by default.
+     * @param sync {@code true} if batches should be forced to the storage device.
+     */
+    public void setSync(boolean sync) {
+        this.sync = sync;
+    }
+    
+    /**
+     * Returns the sequence of the last batch that was written. Sequences keep
+     * increasing across compactions.
+     * @return The sequence of the last batch that was written.
+     */
+    public long getSequence() {
+        return sequence;
+    }
+    
+    /**
+     * Returns the offset at which the next batch is written.
+     * @return The offset at which the next batch is written.
+     * @throws IOException When the size of the journal could not be determined.
+     */
+    public long getOffset() throws IOException {
+        return first + channel.size() - startLength;
+    }
+    
+    /**
+     * Returns the file to which the changes are appended.
+     * @return The file to which the changes are appended.
+     */
+    public File getJournal() {
+        return journal;
+    }
+    
+    /**
+     * Detaches the journal from the monitor and closes it.
+     * @throws IOException When the journal could not be closed.
+     */
+    @Override
+    public void close() throws IOException {
+        monitor.setJournal(null);
+        channel.close();
+    }
+    
+    /**
+     * Returns the offset in the journal from which the changes that are not 
+     * contained in the given snapshot can be read with {@link #read(File, long, Consumer)}.
+     * The offset has to be read before the snapshot is loaded, so that a compaction
+     * in between is noticed by {@code read}.
+     * @param snapshot The snapshot.
+     * @return The offset of the first batch that is not contained in the snapshot.
+     * @throws IOException When the snapshot could not be read.
+     */
+    public static long readOffset(File snapshot) throws IOException {
+        return readHeader(snapshot, OFFSET_HEADER);
+    }
+    
+    /**
+     * Reads a numeric header of a snapshot.
+     * @param snapshot The snapshot.
+     * @param header The header, including the {@code =}.
+     * @return The value of the header, or 0 if the snapshot does not exist or 
+     * does not have the header.
+     * @throws IOException When the snapshot could not be read.
+     */
+    private static long readHeader(File snapshot, String header) throws IOException {
+        if(!snapshot.exists()) {
+            return 0;
+        }
+        
+        try(BufferedReader in = Files.newBufferedReader(snapshot.toPath(), StandardCharsets.UTF_8)) {
+            for(String line = in.readLine(); line != null && line.startsWith(PathFilter.HEADER_PREFIX) && !line.equals(PathFilter.HEADER_END); line = in.readLine()) {
+                if(line.startsWith(header)) {
+                    return Long.parseLong(line.substring(header.length()));
+                }
+            }
+        }
+        return 0;
+    }
+    
+    /**
+     * Reads the first line of a journal.
+     * @param journal The journal.
+     * @return The offset of the first batch in the journal and the length of the 
+     * first line, or zeros if the journal does not exist or was written before
+     * journals recorded their offset.
+     * @throws IOException When the journal could not be read.
+     */
+    private static long[] readStart(File journal) throws IOException {
+        if(!journal.exists()) {
+            return new long[2];
+        }
+        try(InputStream in = new BufferedInputStream(new FileInputStream(journal))) {
+            return readStart(in);
+        }
+    }
+    
+    /**
+     * Reads the first line of a journal from the given stream if it holds the 
+     * offset of the journal, or leaves the stream where it was otherwise.
+     * @param in The stream at the start of the journal, which has to support marks.
+     * @return The offset of the first batch in the journal and the length of the first line.
+     * @throws IOException When the journal could not be read.
+     */
+    private static long[] readStart(InputStream in) throws IOException {
+        in.mark(64);
+        StringBuilder line = new StringBuilder();
+        for(int b = in.read(); b != -1 && line.length() < 32; b = in.read()) {
+            if(b == '\n') {
+                if(line.length() > 3 && line.charAt(0) == OFFSET_CODE && line.indexOf(SEPARATOR) == 1) {
+                    try {
+                        return new long[] { Long.parseLong(line.substring(3)), line.length() + 1 };
+                    } catch(NumberFormatException e) {
+                        throw new IOException("Malformed journal offset: " + line, e);
+                    }
+                }
+                break;
+            }
+            line.append((char) b);
+        }
+        in.reset();
+        return new long[2];
+    }
+    
+    /**
+     * A single change in the journal, or a single line of a stored {@link PathMonitor}.
+     */
+    public static final class Entry {
+        private final Type type;
+        private final long sequence;
+        private final Path path;
+        private final long modifiedTime;
+        private final long size;
+        private final long creationTime;
+        private final boolean directory;
+        
+        private Entry(Type type, long sequence, Path path, long modifiedTime, long size, long creationTime, boolean directory) {
+            this.type = type;
+            this.sequence = sequence;
+            this.path = path;
+            this.modifiedTime = modifiedTime;
+            this.size = size;
+            this.creationTime = creationTime;
+            this.directory = directory;
+        }
+        
+        /**
+         * Parses a record of the format {@code [path]||[last modified]||[size]||[creation]||[d|f]},
+         * or the older format {@code [path]||[last modified]||[size]}. The fields
+         * are parsed from the right, so that the path may contain the separator.
+         * Records of deletions only contain the path.
+         * 
+         * @param type The type of change.
+         * @param sequence The sequence of the batch.
+         * @param record The record.
+         * @return The parsed entry.
+         * @throws IllegalArgumentException When the record is malformed.
+         */
+        static Entry parse(Type type, long sequence, String record) throws IllegalArgumentException {
+            if(type == Type.DELETED) {
+                return new Entry(type, sequence, Paths.get(record), 0, 0, 0, false);
+            }
+            
+            String[] fields = new String[5];
+            int end = record.length();
+            int count = record.endsWith(SEPARATOR + "d") || record.endsWith(SEPARATOR + "f") ? 4 : 2;
+            for(int i = count; i > 0; i--) {
+                int at = record.lastIndexOf(SEPARATOR, end - 1);
+                if(at < 0) {
+                    throw new IllegalArgumentException("Malformed record: " + record);
+                }
+                fields[i] = record.substring(at + SEPARATOR.length(), end);
+                end = at;
+            }
+            
+            Path path = Paths.get(record.substring(0, end));
+            long modified = Long.parseLong(fields[1]);
+            long size = Long.parseLong(fields[2]);
+            if(count == 2) {
+                return new Entry(type, sequence, path, modified, size, modified, false);
+            }
+            return new Entry(type, sequence, path, modified, size, Long.parseLong(fields[3]), fields[4].equals("d"));
+        }
+        
+        /**
+         * Returns the type of change.
+         * @return The type of change.
+         */
+        public Type getType() {
+            return type;
+        }
+        
+        /**
+         * Returns the sequence of the batch that contains the change.
+         * @return The sequence of the batch that contains the change.
+         */
+        public long getSequence() {
+            return sequence;
+        }
+        
+        /**
+         * Returns the path of the file or directory that changed.
+         * @return The path of the file or directory that changed.
+         */
+        public Path getPath() {
+            return path;
+        }
+        
+        /**
+         * Returns the time at which the file was last modified, in milliseconds.
+         * @return The time at which the file was last modified, in milliseconds.
+         */
+        public long getModifiedTime() {
+            return modifiedTime;
+        }
+        
+        /**
+         * Returns the size of the file.
+         * @return The size of the file.
+         */
+        public long getSize() {
+            return size;
+        }
+        
+        /**
+         * Returns the time at which the file was created, in milliseconds.
+         * @return The time at which the file was created, in milliseconds.
+         */
+        public long getCreationTime() {
+            return creationTime;
+        }
+        
+        /**
+         * Returns {@code true} if the entry describes a directory.
+         * @return {@code true} if the entry describes a directory.
+         */
+        public boolean isDirectory() {
+            return directory;
+        }
+    }
+}
@@ -18,18 +18,27 @@
  */
 package cowlite.io.common;
 
+import cowlite.io.util.IOMetrics;
+import cowlite.io.util.Metrics;
+import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.DirectoryStream;
 import java.nio.file.FileSystems;
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
+import java.nio.file.SecureDirectoryStream;
+import java.nio.file.attribute.BasicFileAttributeView;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.nio.file.attribute.FileTime;
 import java.nio.file.spi.FileSystemProvider;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Set;
@@ -53,9 +62,9 @@ import java.util.Set;
  * used for comparison at a later time, either when the stored {@code DirectoryMonitor} becomes
  * unavailable in runtime or when the application is temporarily shut down. This can
  * be done with the {@link #store(File)} method, which will then go through the
- * snapshot and all subdirectories and stores them. Currently, no functionality is
- * implemented to decompile the stored {@code DirectoryMonitor}s. However, this functionality
- * will be implemented soon.
+ * snapshot and all subdirectories and stores them. Stored {@code DirectoryMonitor}s
+ * are loaded again with {@link #decompile(File)}. To persist only the changes
+ * of every update, attach a {@link PathJournal}.
  * 
  * <h1>Basic usage</h1>
  * {@code DirectoryMonitor} can be used to monitor directories for changes. In the example
@@ -150,6 +159,24 @@ public class PathMonitor
      */
     private boolean directory;
     
+    /**
+     * The total size of all files in the monitored directory and its subdirectories,
+     * or the size of the file if a file is monitored.
+     */
+    private long totalBytes;
+    
+    /**
+     * The amount of files in the monitored directory and its subdirectories, or
+     * 1 if a file is monitored.
+     */
+    private long fileCount;
+    
+    /**
+     * The newest last modified time of the monitored file or directory and all of
+     * its descendants, in milliseconds.
+     */
+    private long newestModifiedTime;
+    
     /**
      * All subdirectories of the directory that is referenced by the {@code DirectoryMonitor} represented
      * as a {@code Map}. 
@@ -162,6 +189,39 @@ public class PathMonitor
      */
     private final Path name;
     
+    /**
+     * The state that is shared by all {@code DirectoryMonitor}s of the same tree.
+     */
+    private final Tree tree;
+    
+    /**
+     * {@code true} if this {@code DirectoryMonitor} or one of its descendants
+     * changed since {@link #snapshot} was built.
+     */
+    private boolean dirty = true;
+    
+    /**
+     * The last immutable snapshot of this {@code DirectoryMonitor}, which is shared
+     * by the next snapshot if nothing changed in the meantime. Only used when
+     * snapshots are published.
+     */
+    private PathSnapshot snapshot;
+    
+    /**
+     * {@code true} if every {@link #update(List, List, List)} publishes a snapshot.
+     */
+    private boolean publishing;
+    
+    /**
+     * The snapshot that was published by the last update, see {@link #getSnapshot()}.
+     */
+    private volatile PathSnapshot published;
+    
+    /**
+     * The version of the snapshot that is built next.
+     */
+    private long version;
+    
     /**
      * Instantiates a new {@code DirectoryMonitor} object which only obtains data of
      * the {@code Path} object that was passed as a parameter. Use {@link #update(List, List, List)} 
@@ -171,19 +231,72 @@ public class PathMonitor
      * @throws IllegalArgumentException When the {@code Path} that is given as a parameter is null.
      */
     public PathMonitor(Path p) throws IOException, IllegalArgumentException {
+        this(p, null);
+    }
+    
+    /**
+     * Instantiates a new {@code DirectoryMonitor} object of which the tree only
+     * contains the files and directories that pass the given rules.
+     * @param p The {@code Path} object of which a {@code DirectoryMonitor} should be created.
+     * @param filter The rules of the tree, or null if everything is monitored.
+     * @throws IOException When the directory denoted by the {@code Path} does not exist or IO errors occur.
+     * @throws IllegalArgumentException When the {@code Path} that is given as a parameter is null.
+     * @see #setFilter(PathFilter) 
+     */
+    public PathMonitor(Path p, PathFilter filter) throws IOException, IllegalArgumentException {
+        this(p, attributesOf(p), new Tree(p, filter));
+    }
+    
+    /**
+     * Reads the attributes of the given {@code Path} for {@link #PathMonitor(Path)}.
+     * @param p The {@code Path} of which the attributes should be read.
+     * @return The attributes of the given {@code Path}.
+     * @throws IOException When the file denoted by the {@code Path} does not exist or IO errors occur.
+     * @throws IllegalArgumentException When the {@code Path} is null.
+     */
+    private static BasicFileAttributes attributesOf(Path p) throws IOException, IllegalArgumentException {
         if(p == null) {
             throw new IllegalArgumentException("Path can not be null.");
         }
-        
+        return FS.readAttributes(p, BasicFileAttributes.class);
+    }
+    
+    /**
+     * Instantiates a new {@code DirectoryMonitor} object from attributes that were
+     * already read, so that new children do not have to be stat'ed twice.
+     * @param p The {@code Path} object of which a {@code DirectoryMonitor} should be created.
+     * @param attributes The attributes of the file or directory.
+     * @param tree The tree to which the {@code DirectoryMonitor} belongs.
+     */
+    private PathMonitor(Path p, BasicFileAttributes attributes, Tree tree) {
         this.file = p;
+        this.tree = tree;
+        tree.index.add(this);
         this.name = p.getFileName();
         this.children = new HashMap<>();
-        
-        BasicFileAttributes attributes = FS.readAttributes(p, BasicFileAttributes.class);
         this.creationTime = attributes.creationTime();
         this.modifiedTime = attributes.lastModifiedTime();
         this.directory = attributes.isDirectory();
         this.size = attributes.size();
+        this.newestModifiedTime = modifiedTime.toMillis();
+        if(!directory) {
+            this.totalBytes = size;
+            this.fileCount = 1;
+        }
+    }
+    
+    /**
+     * Instantiates a new {@code DirectoryMonitor} object from a stored entry.
+     * @param entry The stored entry.
+     * @param tree The tree to which the {@code DirectoryMonitor} belongs.
+     */
+    private PathMonitor(PathJournal.Entry entry, Tree tree) {
+        this.file = entry.getPath();
+        this.tree = tree;
+        tree.index.add(this);
+        this.name = file.getFileName();
+        this.children = new HashMap<>();
+        set(entry);
     }
     
     /**
@@ -209,32 +322,208 @@ public class PathMonitor
      *                directory or file has been altered. If this parameter is null,
      *                then modification events are not recorded.
      * @throws IOException When the {@code DirectoryMonitor} could not be updated.
-     * @see #checkChildren(List, List, List) 
+     * @see #checkChildren(List, List, List, ScanStats) 
      */
     public void update(List<PathMonitor> deleted, List<PathMonitor> added, List<PathMonitor> updated) throws IOException  {
+        // The journal needs the events, also when the caller does not record them.
+        PathJournal journal = tree.journal;
+        int deletedFrom = 0, addedFrom = 0, updatedFrom = 0;
+        if(journal != null) {
+            deleted = deleted == null ? new ArrayList<>() : deleted;
+            added = added == null ? new ArrayList<>() : added;
+            updated = updated == null ? new ArrayList<>() : updated;
+            deletedFrom = deleted.size();
+            addedFrom = added.size();
+            updatedFrom = updated.size();
+        }
+        
+        try {
+            Metrics metrics = IOMetrics.get();
+            if(!metrics.isEnabled()) {
+                update(deleted, added, updated, null);
+            } else {
+                long start = System.nanoTime();
+                ScanStats stats = new ScanStats();
+                try {
+                    update(deleted, added, updated, stats);
+                } finally {
+                    metrics.recordTime(IOMetrics.MONITOR_UPDATE_TIME, System.nanoTime() - start);
+                    metrics.recordValue(IOMetrics.MONITOR_UPDATE_NODES, stats.nodes);
+                    metrics.increment(IOMetrics.MONITOR_SYSCALLS, stats.syscalls);
+                }
+            }
+        } catch(IOException | RuntimeException e) {
+            // The nodes that were updated before the failure have changed already, so their events are journaled all the same.
+            if(journal != null) {
+                try {
+                    journal.append(deleted.subList(deletedFrom, deleted.size()), added.subList(addedFrom, added.size()), updated.subList(updatedFrom, updated.size()));
+                } catch(IOException | RuntimeException suppressed) {
+                    e.addSuppressed(suppressed);
+                }
+            }
+            throw e;
+        }
+        
+        if(journal != null) {
+            journal.append(deleted.subList(deletedFrom, deleted.size()), added.subList(addedFrom, added.size()), updated.subList(updatedFrom, updated.size()));
+        }
+        
+        if(publishing) {
+            publish();
+        }
+    }
+    
+    /**
+     * Attaches the journal to which the changes of every update are appended, 
+     * see {@link PathJournal#PathJournal(PathMonitor, File, File)}.
+     * @param journal The journal, or null to detach it.
+     */
+    void setJournal(PathJournal journal) {
+        tree.journal = journal;
+    }
+    
+    /**
+     * Sets the rules that decide which files and directories are monitored by 
+     * the tree to which this {@code DirectoryMonitor} belongs. Entries that are
+     * excluded by the new rules are reported as deleted by the next update, and
+     * entries that were excluded before are reported as added.
+     * @param filter The rules of the tree, or null if everything is monitored.
+     */
+    public void setFilter(PathFilter filter) {
+        tree.filter = filter;
+    }
+    
+    /**
+     * Returns the rules of the tree to which this {@code DirectoryMonitor} belongs.
+     * @return The rules of the tree, or null if everything is monitored.
+     */
+    public PathFilter getFilter() {
+        return tree.filter;
+    }
+    
+    /**
+     * Sets whether every {@link #update(List, List, List)} publishes an immutable
+     * {@link PathSnapshot} of the tree when it has finished. Other threads can then
+     * read the tree through {@link #getSnapshot()} at any time, without locking
+     * and without ever seeing a half-updated tree.
+     * <p>
+     * Snapshots share the nodes of all subtrees that did not change since the
+     * previous snapshot, so publishing costs memory and time in proportion to the
+     * amount of changes. Enabling publishing immediately publishes a snapshot of
+     * the current state, so it must not be done while an update is running.
+     * 
+     * @param publishing {@code true} if snapshots should be published.
+     */
+    public void setPublishing(boolean publishing) {
+        this.publishing = publishing;
+        if(publishing) {
+            publish();
+        } else {
+            published = null;
+        }
+    }
+    
+    /**
+     * Returns the snapshot that was published by the last {@link #update(List, List, List)}
+     * call. This method may be called by any thread, also while an update is running.
+     * @return The last published snapshot, or null if snapshots are not published.
+     * @see #setPublishing(boolean) 
+     */
+    public PathSnapshot getSnapshot() {
+        return published;
+    }
+    
+    /**
+     * Builds a snapshot of the tree and publishes it.
+     */
+    private void publish() {
+        version++;
+        published = snapshot(version);
+    }
+    
+    /**
+     * Returns an immutable snapshot of this {@code DirectoryMonitor}. Only the 
+     * nodes that changed since the previous snapshot are built again; all other
+     * subtrees are shared with it.
+     * @param version The version of the snapshot that is being built.
+     * @return An immutable snapshot of this {@code DirectoryMonitor}.
+     */
+    private PathSnapshot snapshot(long version) {
+        if(snapshot != null && !dirty) {
+            return snapshot;
+        }
+        
+        HashMap<Path, PathSnapshot> childSnapshots = new HashMap<>(children.size() * 4 / 3 + 1);
+        for(PathMonitor child : children.values()) {
+            childSnapshots.put(child.getName(), child.snapshot(version));
+        }
+        
+        snapshot = new PathSnapshot(file, name, creationTime.toMillis(), modifiedTime.toMillis(), size, directory, childSnapshots, version);
+        dirty = false;
+        return snapshot;
+    }
+    
+    /**
+     * Performs the actual {@link #update(List, List, List)} of this {@code DirectoryMonitor}
+     * and all of its subdirectories.
+     * 
+     * @param deleted The list in which deletion events are recorded, or null.
+     * @param added The list in which creation events are recorded, or null.
+     * @param updated The list in which modification events are recorded, or null.
+     * @param stats The statistics of the scan, or null if no measurements are taken.
+     * @throws IOException When the {@code DirectoryMonitor} could not be updated.
+     */
+    private void update(List<PathMonitor> deleted, List<PathMonitor> added, List<PathMonitor> updated, ScanStats stats) throws IOException  {
+        if(stats != null) {
+            stats.syscalls++;
+        }
+        
         /*
-            The file represented by this snapshot doesn't exist. This means
-            that it has most likely been removed. Add it and it's children to the
-            deleted list.
-        */  
-        if(!checkAccess() && deleted != null) {
-            deleted.addAll(children.values());
-            deleted.add(this);
+            Instead of checking whether the file still exists first, its attributes
+            are read right away. If the file doesn't exist, it has most likely been
+            removed. Add it and it's children to the deleted list.
+        */
+        BasicFileAttributes attributes;
+        try {
+            attributes = FS.readAttributes(file, BasicFileAttributes.class);
+        } catch(NoSuchFileException e) {
+            if(deleted != null) {
+                deleted.addAll(children.values());
+                deleted.add(this);
+            }
             return;
         }
         
-        // Obtain the new file metadata
-        BasicFileAttributes attributes = FS.readAttributes(file, BasicFileAttributes.class);
+        update(attributes, deleted, added, updated, stats);
+    }
+    
+    /**
+     * Updates this {@code DirectoryMonitor} with the given, freshly read attributes
+     * and checks its children if it represents a directory.
+     * 
+     * @param attributes The current attributes of the monitored file or directory.
+     * @param deleted The list in which deletion events are recorded, or null.
+     * @param added The list in which creation events are recorded, or null.
+     * @param updated The list in which modification events are recorded, or null.
+     * @param stats The statistics of the scan, or null if no measurements are taken.
+     * @throws IOException When the {@code DirectoryMonitor} could not be updated.
+     */
+    private void update(BasicFileAttributes attributes, List<PathMonitor> deleted, List<PathMonitor> added, List<PathMonitor> updated, ScanStats stats) throws IOException {
+        if(stats != null) {
+            stats.nodes++;
+        }
+        
         FileTime newCreation = attributes.creationTime();
         FileTime newModified = attributes.lastModifiedTime();
         
         // Did the file represented by the snapshot change? If so, add it to the modified list.
-        if(!newCreation.equals(creationTime) || !newModified.equals(modifiedTime)) {
+        if(!sameTime(newCreation, creationTime) || !sameTime(newModified, modifiedTime)) {
             if(updated != null) {
                 updated.add(this);
             }
             
             // The file has changed, update metadata
+            dirty = true;
             creationTime = newCreation;
             modifiedTime = newModified;
             directory = attributes.isDirectory();
@@ -243,32 +532,44 @@ public class PathMonitor
         
         // If this snapshot represents a directory, check it's children
         if(directory) {
-            checkChildren(deleted, added, updated);
-        } else if(!children.isEmpty() && deleted != null) {
-            /*
-                The snapshot does not represent a directory anymore (usually happens
-                when the directory was deleted and replaced by a file that is named
-                identically)
-            */
-            deleted.addAll(children.values());
-            children.clear();
+            checkChildren(deleted, added, updated, stats);
+        } else {
+            if(!children.isEmpty()) {
+                /*
+                    The snapshot does not represent a directory anymore (usually happens
+                    when the directory was deleted and replaced by a file that is named
+                    identically)
+                */
+                if(deleted != null) {
+                    deleted.addAll(children.values());
+                }
+                for(PathMonitor child : children.values()) {
+                    child.unindex();
+                }
+                children.clear();
+                dirty = true;
+            }
+            
+            totalBytes = size;
+            fileCount = 1;
+            newestModifiedTime = modifiedTime.toMillis();
         }
     }
     
     /**
-     * A stripped-down version of the {@code java.nio.Files#exists(Path, LinkOption...)}
-     * method. As checkAccess() will be called often, a slight performance boost was
-     * obtained by making a stripped down version of the previously described method.
-     * 
-     * @return {@code true} if the file/directory that is monitored still exists.
+     * Returns {@code true} if the current time equals the recorded time. Times
+     * that were loaded from a stored {@code DirectoryMonitor} only have millisecond
+     * precision, and are equal to any current time within the same millisecond.
+     * @param current The time that was just read from the file system.
+     * @param recorded The recorded time.
+     * @return {@code true} if the current time equals the recorded time.
      */
-    private boolean checkAccess() {
-        try {
-            FS.checkAccess(file);
+    private static boolean sameTime(FileTime current, FileTime recorded) {
+        if(current.equals(recorded)) {
             return true;
-        } catch(Exception e) {
-            return false;
         }
+        long millis = recorded.toMillis();
+        return current.toMillis() == millis && recorded.equals(FileTime.fromMillis(millis));
     }
     
     /**
@@ -289,45 +590,83 @@ public class PathMonitor
      *                {@code DirectoryMonitor}s to the list of which the monitored
      *                directory or file has been altered. If this parameter is null,
      *                then modification events are not recorded.
+     * @param stats The statistics of the scan, or null if no measurements are taken.
      * @throws IOException When the {@code DirectoryMonitor} could not be updated.
      * @see #update(List, List, List) 
      */
-    private void checkChildren(List<PathMonitor> deleted, List<PathMonitor> added, List<PathMonitor> updated) throws IOException {
+    private void checkChildren(List<PathMonitor> deleted, List<PathMonitor> added, List<PathMonitor> updated, ScanStats stats) throws IOException {
         // This list is used  to keep track of the subdirectories that were deleted
         List<PathMonitor> deletedChildren = new ArrayList<>(children.values());
+        PathFilter filter = tree.filter;
         
-        DirectoryStream<Path> stream = null;
+        // The rollups are summed up from the children while they are updated.
+        long childBytes = 0;
+        long childFiles = 0;
+        long newest = modifiedTime.toMillis();
         
-        try {
-            stream = Files.newDirectoryStream(file);
-            for(Path p : stream) {
-                Path fileName = p.getFileName();
-                PathMonitor snapshot = children.get(fileName);
-                
-                // If the snapshot exists, update it. If it does not, create a new one.
-                if(snapshot != null) {
-                    snapshot.update(deleted, added, updated);
-                    deletedChildren.remove(snapshot);
-                } else {
-                    PathMonitor newSnapshot = new PathMonitor(p);
-                    children.put(newSnapshot.getName(), newSnapshot);
-                    newSnapshot.update(deleted, added, updated);
+        // Directories at the maximum depth are monitored, but not listed.
+        boolean list = filter == null || filter.getMaxDepth() == Integer.MAX_VALUE || depth() < filter.getMaxDepth();
+        if(list && stats != null) {
+            stats.syscalls++;
+        }
+        
+        if(list) {
+            try(DirectoryStream<Path> stream = Files.newDirectoryStream(file)) {
+                for(Path p : stream) {
+                    Path fileName = p.getFileName();
+                    
+                    // Excluded entries are skipped before they are stat'ed, so excluded directories are never listed.
+                    Path relative = null;
+                    if(filter != null) {
+                        relative = tree.root.relativize(p);
+                        if(filter.excludes(relative)) {
+                            continue;
+                        }
+                    }
+                    
+                    // A child that disappeared since it was listed is treated as deleted.
+                    BasicFileAttributes attributes = readAttributes(stream, p, stats);
+                    if(attributes == null) {
+                        continue;
+                    }
+                    
+                    if(filter != null && !attributes.isDirectory() && !filter.includesFile(relative, attributes.size())) {
+                        continue;
+                    }
+                    
+                    PathMonitor snapshot = children.get(fileName);
                     
-                    if(added != null) {
-                        added.add(newSnapshot);
+                    // If the snapshot exists, update it. If it does not, create a new one.
+                    if(snapshot != null) {
+                        snapshot.update(attributes, deleted, added, updated, stats);
+                        deletedChildren.remove(snapshot);
+                        dirty |= snapshot.dirty;
+                    } else {
+                        snapshot = new PathMonitor(p, attributes, tree);
+                        children.put(snapshot.getName(), snapshot);
+                        dirty = true;
+                        
+                        // Recorded before its children, so that it is not lost when updating them fails.
+                        if(added != null) {
+                            added.add(snapshot);
+                        }
+                        snapshot.update(attributes, deleted, added, updated, stats);
                     }
+                    
+                    childBytes += snapshot.totalBytes;
+                    childFiles += snapshot.fileCount;
+                    newest = Math.max(newest, snapshot.newestModifiedTime);
                 }
             }
-        } catch(IOException e) {
-            throw e;
-        } finally {
-            if(stream != null) {
-                stream.close();
-            }
         }
         
-        // Remove items from the children HashMap that were not found with java.io.File's listFiles() method
+        // Remove items from the children HashMap that were not found in the directory listing
         removeChildren(deletedChildren);
+        dirty |= !deletedChildren.isEmpty();
+        
+        totalBytes = childBytes;
+        fileCount = childFiles;
+        newestModifiedTime = newest;
         
         // Add the removed items to the deleted list, if it exists.
         if(deleted != null) {
@@ -335,18 +674,92 @@ public class PathMonitor
         }
     }
     
+    /**
+     * Returns the depth of the monitored file or directory below the root of the tree.
+     * @return The amount of names in the path relative to the root, or 0 for the root itself.
+     */
+    private int depth() {
+        return file.equals(tree.root) ? 0 : tree.root.relativize(file).getNameCount();
+    }
+    
+    /**
+     * Reads the attributes of an entry of a directory with a single file system
+     * call. Where the directory stream is a {@code SecureDirectoryStream}, the 
+     * attributes are read relative to the open directory, so that the path does
+     * not have to be resolved from the root again.
+     * 
+     * @param stream The stream of the directory that contains the entry.
+     * @param p The entry.
+     * @param stats The statistics of the scan, or null if no measurements are taken.
+     * @return The attributes of the entry, or null if it does not exist anymore.
+     * @throws IOException When the attributes could not be read.
+     */
+    private static BasicFileAttributes readAttributes(DirectoryStream<Path> stream, Path p, ScanStats stats) throws IOException {
+        if(stats != null) {
+            stats.syscalls++;
+        }
+        
+        try {
+            if(stream instanceof SecureDirectoryStream) {
+                BasicFileAttributeView view = ((SecureDirectoryStream<Path>) stream).getFileAttributeView(p.getFileName(), BasicFileAttributeView.class);
+                if(view != null) {
+                    return view.readAttributes();
+                }
+            }
+            return FS.readAttributes(p, BasicFileAttributes.class);
+        } catch(NoSuchFileException e) {
+            return null;
+        }
+    }
+    
     /**
      * Removes the list of {@code DirectoryMonitor}s from the children map.
      * @param remove The {@code DirectoryMonitor}s to remove.
      * @see #children
-     * @see #checkChildren(List, List, List) 
+     * @see #checkChildren(List, List, List, ScanStats) 
      */
     private void removeChildren(List<PathMonitor> remove) {
         for(PathMonitor snapshot : remove) {
             children.remove(snapshot.getName());
+            snapshot.unindex();
         }
     }
     
+    /**
+     * Removes this {@code DirectoryMonitor} and all of its descendants from the
+     * index of the tree.
+     */
+    private void unindex() {
+        tree.index.remove(this);
+        for(PathMonitor child : children.values()) {
+            child.unindex();
+        }
+    }
+    
+    /**
+     * Returns the {@code DirectoryMonitor} of the given file or directory in the
+     * tree to which this {@code DirectoryMonitor} belongs, without walking the
+     * tree. The index is kept up to date by {@link #update(List, List, List)}, so
+     * this method should not be called while the tree is being updated.
+     * 
+     * @param p The path of the file or directory. Relative paths are resolved 
+     * in the same way as the path of the root of the tree.
+     * @return The {@code DirectoryMonitor} of the given path, or null if the path
+     * is not part of the tree.
+     */
+    public PathMonitor find(Path p) {
+        PathMonitor found = tree.index.get(p);
+        if(found == null && p.isAbsolute() != tree.root.isAbsolute()) {
+            // Bring the path in the same form as the paths in the tree.
+            Path absoluteRoot = tree.root.toAbsolutePath();
+            Path absolute = p.toAbsolutePath();
+            if(absolute.startsWith(absoluteRoot)) {
+                found = tree.index.get(tree.root.resolve(absoluteRoot.relativize(absolute)));
+            }
+        }
+        return found;
+    }
+    
     /**
      * Compares this DirectoryMonitor to the given DirectoryMonitor.
      * @param other The DirectoryMonitor to compare with.
@@ -394,9 +807,11 @@ public class PathMonitor
      * Stores the {@code DirectoryMonitor} and all {@code DirectoryMonitor}s that represent
      * subdirectories and their files to the specified {@code File}. The data is compiled
      * by writing the data of a single {@code DirectoryMonitor} to each line of the file. Each
-     * line is formatted as [absolute path]||[last modified date]||[file length]. These values
-     * are equal to those returned by {@link #getFile()}, {@link #getModifiedTime()}
-     * and {@link #getSize()}. 
+     * line is formatted as [absolute path]||[last modified date]||[file length]||[creation date]||[d|f]. 
+     * These values are equal to those returned by {@link #getFile()}, {@link #getModifiedTime()},
+     * {@link #getSize()}, {@link #getCreationTime()} and {@link #isDirectory()}. The rules of the tree, if any, are stored in front
+     * of these lines as header lines that start with a {@code #}, followed by a line
+     * {@code #end} that separates them from the entries.
      * 
      * For decompiling files, see {@link #decompile(File)}. 
      * 
@@ -411,12 +826,7 @@ public class PathMonitor
         
         try {
             out = new PrintWriter(f, "UTF-8");
-            
-            out.println(file + "||" + modifiedTime.toMillis() + "||" + size);
-            
-            for(PathMonitor child : children.values()) {
-                child.store(out);
-            }
+            storeAll(out);
         } catch(FileNotFoundException e) {
             throw e;
         } finally {
@@ -433,23 +843,223 @@ public class PathMonitor
      * @param out The {@code PrintWriter} used to write lines to the output file.
      */
     private void store(PrintWriter out) {
-        out.println(file + "||" + modifiedTime.toMillis() + "||" + size);
+        out.println(toRecord());
         
         for(PathMonitor child : children.values()) {
             child.store(out);
         }
     }
     
+    /**
+     * Stores the rules of the tree followed by this {@code DirectoryMonitor} and
+     * all of its descendants.
+     * @param out The {@code PrintWriter} used to write lines to the output file.
+     */
+    void storeAll(PrintWriter out) {
+        if(tree.filter != null) {
+            tree.filter.store(out);
+        }
+        out.println(PathFilter.HEADER_END);
+        store(out);
+    }
+    
+    /**
+     * Returns the line that describes this {@code DirectoryMonitor} in stored files.
+     * @return The line that describes this {@code DirectoryMonitor}.
+     * @see #store(File) 
+     */
+    String toRecord() {
+        return toRecord(file);
+    }
+    
+    /**
+     * Returns the line that describes this {@code DirectoryMonitor} under the given path.
+     * @param path The path under which the {@code DirectoryMonitor} is described.
+     * @return The line that describes this {@code DirectoryMonitor}.
+     */
+    private String toRecord(Path path) {
+        return path + "||" + modifiedTime.toMillis() + "||" + size + "||" + creationTime.toMillis() + "||" + (directory ? 'd' : 'f');
+    }
+    
+    /**
+     * Returns the path of a line in the format of {@link #toRecord()}.
+     * @param record The line.
+     * @return The path of the line, or null if the line is malformed.
+     */
+    static String recordPath(String record) {
+        int end = record.length();
+        for(int i = 0; i < 4; i++) {
+            end = record.lastIndexOf("||", end - 1);
+            if(end < 0) {
+                return null;
+            }
+        }
+        return record.substring(0, end);
+    }
+    
+    /**
+     * Stores all descendants of this {@code DirectoryMonitor} to the given file
+     * in a sorted order, so that two stored trees can be compared with 
+     * {@link PathDiff#diff(File, File, PathDiff.Listener)} without loading them.
+     * The lines have the same format as the lines written by {@link #store(File)},
+     * but the paths are relative to this {@code DirectoryMonitor}, so that trees
+     * with different roots can be compared. The entries are written depth-first, 
+     * and the children of every directory are sorted by name.
+     * 
+     * @param f The file to which to store the sorted tree.
+     * @throws IOException When the file could not be written.
+     */
+    public void storeSorted(File f) throws IOException {
+        try(PrintWriter out = new PrintWriter(f, "UTF-8")) {
+            out.println(PathFilter.HEADER_PREFIX + "root=" + file);
+            if(tree.filter != null) {
+                tree.filter.store(out);
+            }
+            out.println(PathFilter.HEADER_END);
+            storeSorted(out, file);
+            
+            if(out.checkError()) {
+                throw new IOException("Could not write " + f);
+            }
+        }
+    }
+    
+    /**
+     * Stores the children of this {@code DirectoryMonitor} and their descendants,
+     * sorted by name.
+     * @param out The {@code PrintWriter} used to write lines to the output file.
+     * @param root The path to which the paths are relative.
+     */
+    private void storeSorted(PrintWriter out, Path root) {
+        PathMonitor[] sorted = children.values().toArray(new PathMonitor[children.size()]);
+        Arrays.sort(sorted, (x, y) -> x.name.toString().compareTo(y.name.toString()));
+        
+        for(PathMonitor child : sorted) {
+            out.println(child.toRecord(root.relativize(child.file)));
+            child.storeSorted(out, root);
+        }
+    }
+    
     /**
      * Decompiles the given {@code File} to a {@code DirectoryMonitor} structure or
-     * throws a {@code IOException} if the given file could not be decompiled.
+     * throws a {@code IOException} if the given file could not be decompiled. Files
+     * in the older format without creation dates and directory flags can be
+     * decompiled as well.
      * 
      * @param f The file to be decompiled.
      * @return A {@code DirectoryMonitor} which contains all subdirectories that were
      * found in the given file.
+     * @throws IOException When the file could not be read or is malformed.
+     * @see #store(File) 
+     */
+    public static PathMonitor decompile(File f) throws IOException {
+        PathFilter filter = new PathFilter();
+        boolean filtered = false;
+        PathMonitor root = null;
+        boolean header = true;
+        
+        try(BufferedReader in = Files.newBufferedReader(f.toPath(), StandardCharsets.UTF_8)) {
+            for(String line = in.readLine(); line != null; line = in.readLine()) {
+                if(line.isEmpty()) {
+                    continue;
+                }
+                
+                // Header lines only occur in front of the root.
+                if(header && line.equals(PathFilter.HEADER_END)) {
+                    header = false;
+                    continue;
+                }
+                if(header && root == null && line.startsWith(PathFilter.HEADER_PREFIX)) {
+                    filtered |= filter.parse(line);
+                    continue;
+                }
+                header = false;
+                
+                PathJournal.Entry entry = PathJournal.Entry.parse(PathJournal.Type.ADDED, 0, line);
+                if(root == null) {
+                    root = new PathMonitor(entry, new Tree(entry.getPath(), filtered ? filter : null));
+                } else {
+                    root.apply(entry);
+                }
+            }
+        } catch(IllegalArgumentException e) {
+            throw new IOException("Malformed file " + f, e);
+        }
+        
+        if(root == null) {
+            throw new IOException(f + " does not contain a DirectoryMonitor.");
+        }
+        root.rollup();
+        return root;
+    }
+    
+    /**
+     * Applies a stored or journaled entry to the tree to which this {@code DirectoryMonitor}
+     * belongs. Entries of which the parent is not part of the tree are ignored.
+     * This method is only used while a tree is loaded, so changes are not recorded
+     * and the rollups have to be computed with {@link #rollup()} afterwards.
+     * @param entry The entry to apply.
+     */
+    void apply(PathJournal.Entry entry) {
+        Path p = entry.getPath();
+        PathMonitor node = tree.index.get(p);
+        Path parentPath = p.getParent();
+        PathMonitor parent = parentPath == null ? null : tree.index.get(parentPath);
+        
+        if(entry.getType() == PathJournal.Type.DELETED) {
+            if(node != null && parent != null) {
+                parent.removeChildren(Collections.singletonList(node));
+            }
+        } else if(node != null) {
+            node.set(entry);
+        } else if(parent != null) {
+            node = new PathMonitor(entry, tree);
+            parent.children.put(node.getName(), node);
+            
+            // Files in the older format do not tell whether they are a directory.
+            parent.directory = true;
+        }
+    }
+    
+    /**
+     * Sets the attributes of this {@code DirectoryMonitor} to those of a stored entry.
+     * @param entry The stored entry.
+     */
+    private void set(PathJournal.Entry entry) {
+        creationTime = FileTime.fromMillis(entry.getCreationTime());
+        modifiedTime = FileTime.fromMillis(entry.getModifiedTime());
+        size = entry.getSize();
+        directory = entry.isDirectory();
+        dirty = true;
+        
+        if(!directory) {
+            for(PathMonitor child : children.values()) {
+                child.unindex();
+            }
+            children.clear();
+        }
+    }
+    
+    /**
+     * Computes the rollups of this {@code DirectoryMonitor} and all of its
+     * descendants from scratch.
      */
-    public static PathMonitor decompile(File f) {
-        throw new UnsupportedOperationException("Still has to be implemented...");
+    void rollup() {
+        newestModifiedTime = modifiedTime.toMillis();
+        if(!directory) {
+            totalBytes = size;
+            fileCount = 1;
+            return;
+        }
+        
+        totalBytes = 0;
+        fileCount = 0;
+        for(PathMonitor child : children.values()) {
+            child.rollup();
+            totalBytes += child.totalBytes;
+            fileCount += child.fileCount;
+            newestModifiedTime = Math.max(newestModifiedTime, child.newestModifiedTime);
+        }
     }
 
     /**
@@ -512,6 +1122,37 @@ public class PathMonitor
         return modifiedTime.toMillis();
     }
 
+    /**
+     * Returns the total size of all files in the monitored directory and its
+     * subdirectories, as recorded by the last {@link #update(List, List, List)} call.
+     * For a file, this is the size of the file.
+     * @return The total size of all files in the monitored directory and its subdirectories.
+     */
+    public long getTotalBytes() {
+        return totalBytes;
+    }
+    
+    /**
+     * Returns the amount of files in the monitored directory and its subdirectories,
+     * as recorded by the last {@link #update(List, List, List)} call. For a file,
+     * this is 1.
+     * @return The amount of files in the monitored directory and its subdirectories.
+     */
+    public long getFileCount() {
+        return fileCount;
+    }
+    
+    /**
+     * Returns the newest last modified time of the monitored file or directory 
+     * and all of its descendants in milliseconds, as recorded by the last 
+     * {@link #update(List, List, List)} call.
+     * @return The newest last modified time of the monitored file or directory 
+     * and all of its descendants in milliseconds.
+     */
+    public long getNewestModifiedTime() {
+        return newestModifiedTime;
+    }
+    
     /**
      * Returns the children of the {@code DirectoryMonitor}, which are subdirectories and
      * files contained by the directory that the {@code DirectoryMonitor} represents.
@@ -521,4 +1162,50 @@ public class PathMonitor
     public HashMap<Path, PathMonitor> getChildren() {
         return children;
     }
+    
+    /**
+     * The state that is shared by all {@code DirectoryMonitor}s of the same tree.
+     */
+    private static final class Tree {
+        /**
+         * The path of the root of the tree, against which the rules are matched.
+         */
+        private final Path root;
+        
+        /**
+         * The rules of the tree, or null if everything is monitored.
+         */
+        private volatile PathFilter filter;
+        
+        /**
+         * The index of all {@code DirectoryMonitor}s of the tree by their full path.
+         */
+        private final PathIndex index = new PathIndex();
+        
+        /**
+         * The journal to which the changes of every update are appended, or null.
+         */
+        private PathJournal journal;
+        
+        private Tree(Path root, PathFilter filter) {
+            this.root = root;
+            this.filter = filter;
+        }
+    }
+    
+    /**
+     * The statistics of a single {@link #update(List, List, List)} call, which
+     * are reported to the installed {@code Metrics} when the update has finished.
+     */
+    private static final class ScanStats {
+        /**
+         * The amount of {@code DirectoryMonitor}s that were visited.
+         */
+        private long nodes;
+        
+        /**
+         * The amount of file system calls that were issued.
+         */
+        private long syscalls;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,169 @@
+/* 
+ * Copyright (C) 2018 Wessel Jelle Jongkind.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package cowlite.io.common;
+
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An immutable snapshot of a {@link PathMonitor} and all of its descendants, as
+ * published at the end of an update (see {@link PathMonitor#setPublishing(boolean)}).
+ * Snapshots can be read by any amount of threads while the monitor is being updated.
+ * <p>
+ * Consecutive snapshots share the nodes of subtrees that did not change between
+ * them. The version of a node tells which snapshot it was built for, so a node
+ * with the same version as in a previous snapshot is the very same object and 
+ * nothing below it has changed.
+ * 
+ * @version 2026-10-19 (yyyy-mm-dd)
+ */
+public final class PathSnapshot
+{
+    private final Path file;
+    private final Path name;
+    private final long creationTime;
+    private final long modifiedTime;
+    private final long size;
+    private final boolean directory;
+    private final Map<Path, PathSnapshot> children;
+    private final long version;
+    
+    /**
+     * Instantiates a new {@code PathSnapshot} object.
+     * @param file The monitored file or directory.
+     * @param name The name of the monitored file or directory.
+     * @param creationTime The time at which the file was created, in milliseconds.
+     * @param modifiedTime The time at which the file was last modified, in milliseconds.
+     * @param size The size of the file.
+     * @param directory {@code true} if the snapshot represents a directory.
+     * @param children The snapshots of the children, by name. The map is not copied.
+     * @param version The version of the snapshot for which this node was built.
+     */
+    PathSnapshot(Path file, Path name, long creationTime, long modifiedTime, long size, boolean directory, HashMap<Path, PathSnapshot> children, long version) {
+        this.file = file;
+        this.name = name;
+        this.creationTime = creationTime;
+        this.modifiedTime = modifiedTime;
+        this.size = size;
+        this.directory = directory;
+        this.children = Collections.unmodifiableMap(children);
+        this.version = version;
+    }
+    
+    /**
+     * Compares this snapshot to the given snapshot, in the same way as 
+     * {@link PathMonitor#compareTo(PathMonitor, List, List)}.
+     * @param other The snapshot to compare with.
+     * @param missing A list in which the snapshots are stored that are present 
+     *                in the given snapshot's subdirectories but not in this 
+     *                snapshot's subdirectories, or that differ in type or size.
+     * @param garbage A list in which the snapshots are stored that are present 
+     *                in this snapshot's subdirectories, but not in the given snapshot's.
+     */
+    public void compareTo(PathSnapshot other, List<PathSnapshot> missing, List<PathSnapshot> garbage) {
+        // Shared subtrees are identical.
+        if(children.isEmpty() || other == this) {
+            return;
+        }
+        
+        HashMap<Path, PathSnapshot> otherChildren = new HashMap<>(other.getChildren());
+        for(Map.Entry<Path, PathSnapshot> e : children.entrySet()) {
+            PathSnapshot child = otherChildren.remove(e.getKey());
+            if(child != null) {
+                PathSnapshot myChild = e.getValue();
+                if(myChild.isDirectory() != child.isDirectory() || myChild.getSize() != child.getSize()) {
+                    missing.add(child);
+                }
+                myChild.compareTo(child, missing, garbage);
+            } else {
+                garbage.add(e.getValue());
+            }
+        }
+        
+        missing.addAll(otherChildren.values());
+    }
+    
+    /**
+     * Returns the monitored file or directory.
+     * @return The monitored file or directory.
+     */
+    public Path getFile() {
+        return file;
+    }
+    
+    /**
+     * Returns the name of the monitored file or directory.
+     * @return The name of the monitored file or directory.
+     */
+    public Path getName() {
+        return name;
+    }
+    
+    /**
+     * Returns the time at which the file was created, in milliseconds.
+     * @return The time at which the file was created, in milliseconds.
+     */
+    public long getCreationTime() {
+        return creationTime;
+    }
+    
+    /**
+     * Returns the time at which the file was last modified, in milliseconds.
+     * @return The time at which the file was last modified, in milliseconds.
+     */
+    public long getModifiedTime() {
+        return modifiedTime;
+    }
+    
+    /**
+     * Returns the size of the file.
+     * @return The size of the file.
+     */
+    public long getSize() {
+        return size;
+    }
+    
+    /**
+     * Returns {@code true} if the snapshot represents a directory.
+     * @return {@code true} if the snapshot represents a directory.
+     */
+    public boolean isDirectory() {
+        return directory;
+    }
+    
+    /**
+     * Returns the snapshots of the children of the directory, by name.
+     * @return An unmodifiable map of the snapshots of the children.
+     */
+    public Map<Path, PathSnapshot> getChildren() {
+        return children;
+    }
+    
+    /**
+     * Returns the version of the snapshot for which this node was built. The 
+     * version is increased by every published snapshot.
+     * @return The version of the snapshot for which this node was built.
+     */
+    public long getVersion() {
+        return version;
+    }
+}
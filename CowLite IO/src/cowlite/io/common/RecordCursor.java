@@ -0,0 +1,502 @@
+/* 
+ * Copyright (C) 2018 Wessel Jelle Jongkind.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package cowlite.io.common;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Walks through the lines of a file as delimited records, such as the lines of
+ * a CSV or TSV file. The fields of a record are not split into separate {@code String}s;
+ * only the offsets at which they start and end are recorded, in arrays that are 
+ * reused for every record. Numeric fields are parsed directly from the line, so
+ * reading numeric columns creates no garbage at all.
+ * <p>
+ * Fields can be quoted with the quote character, in which case the delimiter can
+ * be part of the field and two consecutive quote characters represent a single
+ * one. Because records are parsed from the lines of a file, a quoted field can 
+ * not span multiple lines.
+ * 
+ * <pre><i>
+ *      RecordCursor records = reader.getRecords(',');
+ *      records.setColumns(0, 3);
+ *      while(records.next()) {
+ *          total += records.getDouble(3);
+ *      }
+ * </i></pre>
+ * 
+ * @version 2026-10-19 (yyyy-mm-dd)
+ * @see FileDataReader#getRecords(char) 
+ */
+public class RecordCursor
+{
+    /**
+     * Powers of ten that can be represented exactly by a {@code double}.
+     */
+    private static final double[] POWERS_OF_TEN = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+        1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+    
+    /**
+     * The largest significand that can be represented exactly by a {@code double}.
+     */
+    private static final long MAX_EXACT_SIGNIFICAND = 1L << 53;
+    
+    private final List<String> lines;
+    private final char delimiter;
+    private final char quote;
+    
+    /**
+     * The number of the line after the last record.
+     */
+    private final int end;
+    
+    /**
+     * The number of the line of the current record.
+     */
+    private int line;
+    
+    /**
+     * The current line, or null if there is no current record.
+     */
+    private String text;
+    
+    /**
+     * The offsets at which the recorded fields start and end. For quoted fields,
+     * these exclude the quotes.
+     */
+    private int[] starts = new int[16];
+    private int[] ends = new int[16];
+    
+    /**
+     * {@code true} for quoted fields that contain escaped quotes.
+     */
+    private boolean[] escaped = new boolean[16];
+    
+    /**
+     * The amount of fields of the current record, or of the projected fields that
+     * were found in it.
+     */
+    private int fieldCount;
+    
+    /**
+     * The index in the offset arrays of every column, or null if all columns are
+     * recorded. Columns that are not projected have -1.
+     */
+    private int[] slots;
+    
+    /**
+     * The amount of fields that have to be scanned to find all projected columns.
+     */
+    private int scanLimit = Integer.MAX_VALUE;
+    
+    /**
+     * Instantiates a new {@code RecordCursor} object for the given range of lines.
+     * @param lines The lines of the file.
+     * @param delimiter The character that separates fields.
+     * @param quote The character with which fields can be quoted.
+     * @param from The number of the first line to parse.
+     * @param to The number of the line after the last line to parse.
+     * @throws IllegalArgumentException When the delimiter equals the quote character.
+     */
+    RecordCursor(List<String> lines, char delimiter, char quote, int from, int to) throws IllegalArgumentException {
+        if(delimiter == quote) {
+            throw new IllegalArgumentException("The delimiter and quote character have to differ.");
+        }
+        
+        this.lines = lines;
+        this.delimiter = delimiter;
+        this.quote = quote;
+        this.line = from - 1;
+        this.end = to;
+    }
+    
+    /**
+     * Only records the given columns of every record. Scanning a record stops once
+     * the last of these columns has been found, which saves time for wide records
+     * of which only a few columns are needed. Other columns can not be accessed 
+     * anymore.
+     * @param columns The indices of the columns to record, starting with 0.
+     * @throws IllegalArgumentException When a column index is negative.
+     */
+    public void setColumns(int... columns) throws IllegalArgumentException {
+        int max = -1;
+        for(int column : columns) {
+            if(column < 0) {
+                throw new IllegalArgumentException("Invalid column: " + column);
+            }
+            max = Math.max(max, column);
+        }
+        
+        slots = new int[max + 1];
+        Arrays.fill(slots, -1);
+        int slot = 0;
+        for(int column = 0; column <= max; column++) {
+            for(int c : columns) {
+                if(c == column) {
+                    slots[column] = slot++;
+                    break;
+                }
+            }
+        }
+        scanLimit = max + 1;
+    }
+    
+    /**
+     * Records all columns of every record again, after {@link #setColumns(int...)}.
+     */
+    public void setAllColumns() {
+        slots = null;
+        scanLimit = Integer.MAX_VALUE;
+    }
+    
+    /**
+     * Moves to the next record and finds its fields.
+     * @return {@code true} if there was a next record.
+     */
+    public boolean next() {
+        if(line + 1 >= end) {
+            line = end;
+            text = null;
+            fieldCount = 0;
+            return false;
+        }
+        
+        text = lines.get(++line);
+        parse();
+        return true;
+    }
+    
+    /**
+     * Finds the fields of the current line.
+     */
+    private void parse() {
+        String s = text;
+        int length = s.length();
+        int column = 0;
+        int i = 0;
+        fieldCount = 0;
+        
+        while(column < scanLimit) {
+            int start;
+            int stop;
+            boolean hasEscapes = false;
+            
+            if(i < length && s.charAt(i) == quote) {
+                start = ++i;
+                while(true) {
+                    int q = s.indexOf(quote, i);
+                    if(q < 0) {
+                        // Unterminated quote, the field ends at the end of the line.
+                        i = length;
+                        stop = length;
+                        break;
+                    }
+                    if(q + 1 < length && s.charAt(q + 1) == quote) {
+                        hasEscapes = true;
+                        i = q + 2;
+                    } else {
+                        stop = q;
+                        i = q + 1;
+                        break;
+                    }
+                }
+                
+                // Anything between the closing quote and the delimiter is ignored.
+                int d = s.indexOf(delimiter, i);
+                i = d < 0 ? length : d;
+            } else {
+                start = i;
+                int d = s.indexOf(delimiter, i);
+                i = d < 0 ? length : d;
+                stop = i;
+            }
+            
+            if(slots == null || slots[column] >= 0) {
+                record(start, stop, hasEscapes);
+            }
+            column++;
+            
+            if(i >= length) {
+                break;
+            }
+            i++;
+            
+            // A delimiter at the end of the line is followed by an empty field.
+            if(i == length && column < scanLimit) {
+                if(slots == null || slots[column] >= 0) {
+                    record(length, length, false);
+                }
+                break;
+            }
+        }
+    }
+    
+    private void record(int start, int stop, boolean hasEscapes) {
+        if(fieldCount == starts.length) {
+            starts = Arrays.copyOf(starts, fieldCount * 2);
+            ends = Arrays.copyOf(ends, fieldCount * 2);
+            escaped = Arrays.copyOf(escaped, fieldCount * 2);
+        }
+        starts[fieldCount] = start;
+        ends[fieldCount] = stop;
+        escaped[fieldCount] = hasEscapes;
+        fieldCount++;
+    }
+    
+    /**
+     * Returns the amount of fields of the current record. When columns are projected,
+     * this is the amount of projected columns that the record has.
+     * @return The amount of fields of the current record.
+     */
+    public int getFieldCount() {
+        return fieldCount;
+    }
+    
+    /**
+     * Returns the number of the line of the current record, starting with 0.
+     * @return The number of the line of the current record.
+     */
+    public int getLineNumber() {
+        return line;
+    }
+    
+    /**
+     * Returns {@code true} if the current record has the given column.
+     * @param column The index of the column, starting with 0.
+     * @return {@code true} if the current record has the given column.
+     */
+    public boolean hasColumn(int column) {
+        if(column < 0) {
+            return false;
+        }
+        if(slots == null) {
+            return column < fieldCount;
+        }
+        return column < slots.length && slots[column] >= 0 && slots[column] < fieldCount;
+    }
+    
+    /**
+     * Returns the value of the given column in the current record, without quotes.
+     * This is the only accessor that creates a new {@code String}.
+     * @param column The index of the column, starting with 0.
+     * @return The value of the column.
+     * @throws IndexOutOfBoundsException When the current record does not have the 
+     *                                   column, or it was not projected.
+     */
+    public String getString(int column) throws IndexOutOfBoundsException {
+        int slot = slot(column);
+        String value = text.substring(starts[slot], ends[slot]);
+        if(escaped[slot]) {
+            String single = String.valueOf(quote);
+            value = value.replace(single + single, single);
+        }
+        return value;
+    }
+    
+    /**
+     * Returns {@code true} if the given column of the current record is empty.
+     * @param column The index of the column, starting with 0.
+     * @return {@code true} if the column is empty.
+     * @throws IndexOutOfBoundsException When the current record does not have the 
+     *                                   column, or it was not projected.
+     */
+    public boolean isEmpty(int column) throws IndexOutOfBoundsException {
+        int slot = slot(column);
+        return starts[slot] == ends[slot];
+    }
+    
+    /**
+     * Parses the given column of the current record to a {@code long}, without
+     * creating a {@code String} of it. Spaces around the number are ignored.
+     * @param column The index of the column, starting with 0.
+     * @return The value of the column.
+     * @throws IndexOutOfBoundsException When the current record does not have the 
+     *                                   column, or it was not projected.
+     * @throws NumberFormatException When the column does not contain a valid {@code long}.
+     */
+    public long getLong(int column) throws IndexOutOfBoundsException, NumberFormatException {
+        int slot = slot(column);
+        return parseLong(text, trimStart(text, starts[slot], ends[slot]), trimEnd(text, starts[slot], ends[slot]));
+    }
+    
+    /**
+     * Parses the given column of the current record to a {@code double}, without
+     * creating a {@code String} of it. Spaces around the number are ignored.
+     * <p>
+     * Decimal numbers with at most 15 significant digits and a small exponent,
+     * which covers most data, are converted exactly with a single multiplication
+     * or division. All other numbers are handed to {@code Double#parseDouble(String)}.
+     * 
+     * @param column The index of the column, starting with 0.
+     * @return The value of the column.
+     * @throws IndexOutOfBoundsException When the current record does not have the 
+     *                                   column, or it was not projected.
+     * @throws NumberFormatException When the column does not contain a valid number.
+     */
+    public double getDouble(int column) throws IndexOutOfBoundsException, NumberFormatException {
+        int slot = slot(column);
+        return parseDouble(text, trimStart(text, starts[slot], ends[slot]), trimEnd(text, starts[slot], ends[slot]));
+    }
+    
+    /**
+     * Returns the index in the offset arrays of the given column.
+     */
+    private int slot(int column) {
+        if(!hasColumn(column)) {
+            throw new IndexOutOfBoundsException("Line " + line + " has no column " + column + ".");
+        }
+        return slots == null ? column : slots[column];
+    }
+    
+    private static int trimStart(String s, int start, int end) {
+        while(start < end && s.charAt(start) == ' ') {
+            start++;
+        }
+        return start;
+    }
+    
+    private static int trimEnd(String s, int start, int end) {
+        while(end > start && s.charAt(end - 1) == ' ') {
+            end--;
+        }
+        return end;
+    }
+    
+    /**
+     * Parses the characters of the given {@code String} between {@code start} and
+     * {@code end} to a {@code long}.
+     */
+    static long parseLong(String s, int start, int end) throws NumberFormatException {
+        int i = start;
+        boolean negative = false;
+        if(i < end && (s.charAt(i) == '-' || s.charAt(i) == '+')) {
+            negative = s.charAt(i) == '-';
+            i++;
+        }
+        if(i == end) {
+            throw new NumberFormatException("For input string: \"" + s.substring(start, end) + "\"");
+        }
+        
+        // Accumulate negatively, so that Long.MIN_VALUE can be parsed as well.
+        long limit = negative ? Long.MIN_VALUE : -Long.MAX_VALUE;
+        long value = 0;
+        for(; i < end; i++) {
+            int digit = s.charAt(i) - '0';
+            if(digit < 0 || digit > 9 || value < limit / 10 || value * 10 < limit + digit) {
+                throw new NumberFormatException("For input string: \"" + s.substring(start, end) + "\"");
+            }
+            value = value * 10 - digit;
+        }
+        return negative ? value : -value;
+    }
+    
+    /**
+     * Parses the characters of the given {@code String} between {@code start} and
+     * {@code end} to a {@code double}.
+     */
+    static double parseDouble(String s, int start, int end) throws NumberFormatException {
+        int i = start;
+        boolean negative = false;
+        if(i < end && (s.charAt(i) == '-' || s.charAt(i) == '+')) {
+            negative = s.charAt(i) == '-';
+            i++;
+        }
+        
+        long significand = 0;
+        int exponent = 0;
+        boolean digits = false;
+        boolean truncated = false;
+        
+        for(; i < end; i++) {
+            int digit = s.charAt(i) - '0';
+            if(digit < 0 || digit > 9) {
+                break;
+            }
+            digits = true;
+            if(significand <= (Long.MAX_VALUE - 9) / 10) {
+                significand = significand * 10 + digit;
+            } else {
+                truncated = true;
+                exponent++;
+            }
+        }
+        
+        if(i < end && s.charAt(i) == '.') {
+            for(i++; i < end; i++) {
+                int digit = s.charAt(i) - '0';
+                if(digit < 0 || digit > 9) {
+                    break;
+                }
+                digits = true;
+                if(significand <= (Long.MAX_VALUE - 9) / 10) {
+                    significand = significand * 10 + digit;
+                    exponent--;
+                } else {
+                    truncated = true;
+                }
+            }
+        }
+        
+        if(digits && i < end && (s.charAt(i) == 'e' || s.charAt(i) == 'E')) {
+            int j = i + 1;
+            boolean negativeExponent = false;
+            if(j < end && (s.charAt(j) == '-' || s.charAt(j) == '+')) {
+                negativeExponent = s.charAt(j) == '-';
+                j++;
+            }
+            
+            int e = 0;
+            int first = j;
+            for(; j < end; j++) {
+                int digit = s.charAt(j) - '0';
+                if(digit < 0 || digit > 9) {
+                    break;
+                }
+                if(e < 100000) {
+                    e = e * 10 + digit;
+                }
+            }
+            
+            if(j > first) {
+                exponent += negativeExponent ? -e : e;
+                i = j;
+            }
+        }
+        
+        // Anything that is not a plain decimal number, such as NaN, Infinity, hexadecimal
+        // numbers or type suffixes, is left to Double.parseDouble.
+        if(!digits || i != end || truncated) {
+            return Double.parseDouble(s.substring(start, end));
+        }
+        
+        double value;
+        if(significand == 0) {
+            value = 0;
+        } else if(significand <= MAX_EXACT_SIGNIFICAND && exponent >= 0 && exponent < POWERS_OF_TEN.length) {
+            value = significand * POWERS_OF_TEN[exponent];
+        } else if(significand <= MAX_EXACT_SIGNIFICAND && exponent < 0 && -exponent < POWERS_OF_TEN.length) {
+            value = significand / POWERS_OF_TEN[-exponent];
+        } else {
+            return Double.parseDouble(s.substring(start, end));
+        }
+        return negative ? -value : value;
+    }
+}
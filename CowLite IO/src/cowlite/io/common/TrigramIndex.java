@@ -0,0 +1,587 @@
+/* 
+ * Copyright (C) 2018 Wessel Jelle Jongkind.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package cowlite.io.common;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An index of the lines of a file by the trigrams (sequences of three characters)
+ * that occur in them. For every trigram, the index holds the sorted numbers of the
+ * lines in which it occurs.
+ * <p>
+ * Before a regex code is matched against the lines of a file, the literals that
+ * every match has to contain are derived from it (see {@link #requiredLiterals(String)}). 
+ * Only the lines that contain all trigrams of those literals can contain a match,
+ * so all other lines can be skipped. When no such literals can be derived, for
+ * example because the regex code consists of alternatives or is case-insensitive,
+ * all lines have to be matched.
+ * <p>
+ * An index can be stored next to the file it was built from. It records the size
+ * and last modified time of the file, so that an index of a file that has changed
+ * since is not used.
+ * 
+ * @version 2026-10-19 (yyyy-mm-dd)
+ * @see FileDataReader#enableIndex(boolean) 
+ */
+public class TrigramIndex
+{
+    /**
+     * The extension of the files to which indices are stored.
+     */
+    public static final String EXTENSION = ".trigram";
+    
+    /**
+     * Identifies index files and the version of their format.
+     */
+    private static final int MAGIC = 0x434C5431;
+    
+    /**
+     * The line numbers per trigram. Trigrams are packed into a {@code long}, see {@link #trigram(CharSequence, int)}.
+     */
+    private final Map<Long, int[]> postings;
+    
+    /**
+     * The amount of lines of the file that was indexed.
+     */
+    private final int lineCount;
+    
+    /**
+     * The size in bytes of the file when it was indexed.
+     */
+    private final long fileSize;
+    
+    /**
+     * The last modified time in milliseconds of the file when it was indexed.
+     */
+    private final long fileModified;
+    
+    /**
+     * Instantiates a new {@code TrigramIndex} object. Indices are obtained
+     * through {@link #build(List, long, long)} or {@link #load(File, long, long)}.
+     */
+    private TrigramIndex(Map<Long, int[]> postings, int lineCount, long fileSize, long fileModified) {
+        this.postings = postings;
+        this.lineCount = lineCount;
+        this.fileSize = fileSize;
+        this.fileModified = fileModified;
+    }
+    
+    /**
+     * Builds an index of the given lines.
+     * @param lines The lines of the file.
+     * @param fileSize The size of the file in bytes.
+     * @param fileModified The last modified time of the file in milliseconds.
+     * @return The index of the given lines.
+     */
+    public static TrigramIndex build(List<String> lines, long fileSize, long fileModified) {
+        HashMap<Long, Postings> building = new HashMap<>();
+        
+        for(int i = 0; i < lines.size(); i++) {
+            String line = lines.get(i);
+            for(int j = 0; j + 3 <= line.length(); j++) {
+                Long key = trigram(line, j);
+                Postings p = building.get(key);
+                if(p == null) {
+                    p = new Postings();
+                    building.put(key, p);
+                }
+                p.add(i);
+            }
+        }
+        
+        HashMap<Long, int[]> postings = new HashMap<>(building.size() * 4 / 3 + 1);
+        for(Map.Entry<Long, Postings> e : building.entrySet()) {
+            postings.put(e.getKey(), e.getValue().toArray());
+        }
+        return new TrigramIndex(postings, lines.size(), fileSize, fileModified);
+    }
+    
+    /**
+     * Loads the index that was stored to the given file, if it was built from a
+     * file with the given size and last modified time.
+     * @param indexFile The file to which the index was stored.
+     * @param fileSize The current size of the indexed file in bytes.
+     * @param fileModified The current last modified time of the indexed file in milliseconds.
+     * @return The index, or null if it does not exist, is damaged or was built
+     *         from a different version of the file.
+     * @throws IOException When the index file could not be read.
+     */
+    public static TrigramIndex load(File indexFile, long fileSize, long fileModified) throws IOException {
+        try(DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(indexFile)))) {
+            if(in.readInt() != MAGIC || in.readLong() != fileSize || in.readLong() != fileModified) {
+                return null;
+            }
+            
+            int lineCount = in.readInt();
+            int trigrams = in.readInt();
+            if(lineCount < 0 || trigrams < 0) {
+                return null;
+            }
+            HashMap<Long, int[]> postings = new HashMap<>((int) Math.min(trigrams * 4L / 3 + 1, Integer.MAX_VALUE));
+            for(int i = 0; i < trigrams; i++) {
+                long key = in.readLong();
+                // A damaged count must not allocate more lines than the file has
+                int count = readVarInt(in);
+                if(count < 0 || count > lineCount) {
+                    return null;
+                }
+                int[] lines = new int[count];
+                int line = 0;
+                for(int j = 0; j < lines.length; j++) {
+                    line += readVarInt(in);
+                    if(line < 0 || line >= lineCount) {
+                        return null;
+                    }
+                    lines[j] = line;
+                }
+                postings.put(key, lines);
+            }
+            return new TrigramIndex(postings, lineCount, fileSize, fileModified);
+        } catch(FileNotFoundException | EOFException e) {
+            return null;
+        }
+    }
+    
+    /**
+     * Stores the index to the given file. Line numbers are stored as variable-length
+     * differences to the previous line number, which keeps index files small.
+     * @param indexFile The file to which the index is stored.
+     * @throws IOException When the index could not be stored.
+     */
+    public void store(File indexFile) throws IOException {
+        try(DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(indexFile)))) {
+            out.writeInt(MAGIC);
+            out.writeLong(fileSize);
+            out.writeLong(fileModified);
+            out.writeInt(lineCount);
+            out.writeInt(postings.size());
+            
+            for(Map.Entry<Long, int[]> e : postings.entrySet()) {
+                int[] lines = e.getValue();
+                out.writeLong(e.getKey());
+                writeVarInt(out, lines.length);
+                int previous = 0;
+                for(int line : lines) {
+                    writeVarInt(out, line - previous);
+                    previous = line;
+                }
+            }
+        }
+    }
+    
+    /**
+     * Returns the file to which the index of the given file is stored by default.
+     * @param f The indexed file.
+     * @return The file to which the index of the given file is stored by default.
+     */
+    public static File indexFileFor(File f) {
+        return new File(f.getPath() + EXTENSION);
+    }
+    
+    /**
+     * Returns the numbers of the lines that may contain a match for the given regex
+     * code, in ascending order.
+     * @param regex The regex code.
+     * @return The numbers of the lines that may contain a match, or null if every
+     *         line may contain a match.
+     */
+    public int[] candidates(String regex) {
+        int[] result = null;
+        
+        for(String literal : requiredLiterals(regex)) {
+            for(int i = 0; i + 3 <= literal.length(); i++) {
+                int[] lines = postings.get(trigram(literal, i));
+                if(lines == null) {
+                    return new int[0];
+                }
+                result = result == null ? lines : intersect(result, lines);
+                if(result.length == 0) {
+                    return result;
+                }
+            }
+        }
+        return result;
+    }
+    
+    /**
+     * Returns the amount of lines in the indexed file.
+     * @return The amount of lines in the indexed file.
+     */
+    public int getLineCount() {
+        return lineCount;
+    }
+    
+    /**
+     * Returns the amount of distinct trigrams in the indexed file.
+     * @return The amount of distinct trigrams in the indexed file.
+     */
+    public int getTrigramCount() {
+        return postings.size();
+    }
+    
+    /**
+     * Returns the size in bytes of the file when it was indexed.
+     * @return The size in bytes of the file when it was indexed.
+     */
+    public long getFileSize() {
+        return fileSize;
+    }
+    
+    /**
+     * Returns the last modified time in milliseconds of the file when it was indexed.
+     * @return The last modified time in milliseconds of the file when it was indexed.
+     */
+    public long getFileModified() {
+        return fileModified;
+    }
+    
+    /**
+     * Derives literals of at least three characters that every match of the given
+     * regex code has to contain. Only the top level of the regex code is looked at:
+     * groups, character classes and escapes other than escaped punctuation end a
+     * literal, and characters that are followed by a quantifier that allows zero 
+     * occurrences are left out. Regex codes with alternatives at the top level or
+     * with inline flags yield no literals at all.
+     * 
+     * @param regex The regex code.
+     * @return The literals that every match has to contain.
+     */
+    static List<String> requiredLiterals(String regex) {
+        List<String> literals = new ArrayList<>();
+        StringBuilder run = new StringBuilder();
+        
+        // Bail out on constructs that change what the literals mean.
+        for(int i = 0; i < regex.length(); i++) {
+            char c = regex.charAt(i);
+            if(c == '\\') {
+                i++;
+            } else if(c == '(' && i + 2 < regex.length() && regex.charAt(i + 1) == '?'
+                    && (Character.isLetter(regex.charAt(i + 2)) || regex.charAt(i + 2) == '-')) {
+                return literals;
+            }
+        }
+        
+        int i = 0;
+        while(i < regex.length()) {
+            char c = regex.charAt(i);
+            
+            if(c == '\\' && i + 1 < regex.length()) {
+                char next = regex.charAt(i + 1);
+                if(next == 'Q') {
+                    int end = regex.indexOf("\\E", i + 2);
+                    if(end < 0) {
+                        end = regex.length();
+                    }
+                    run.append(regex, i + 2, end);
+                    
+                    // The last quoted character can still be made optional by a quantifier
+                    i = quantify(regex, Math.min(end + 2, regex.length()), run, literals);
+                } else if(Character.isLetterOrDigit(next)) {
+                    flush(run, literals);
+                    i = skipQuantifier(regex, skipEscape(regex, i));
+                } else {
+                    run.append(next);
+                    i = quantify(regex, i + 2, run, literals);
+                }
+            } else if(c == '|') {
+                literals.clear();
+                return literals;
+            } else if(c == '[') {
+                flush(run, literals);
+                i = skipQuantifier(regex, skipClass(regex, i));
+            } else if(c == '(') {
+                flush(run, literals);
+                int end = skipGroup(regex, i);
+                if(end < 0) {
+                    literals.clear();
+                    return literals;
+                }
+                i = skipQuantifier(regex, end);
+            } else if(c == '.' || c == '^' || c == '$' || c == ')') {
+                flush(run, literals);
+                i = skipQuantifier(regex, i + 1);
+            } else {
+                run.append(c);
+                i = quantify(regex, i + 1, run, literals);
+            }
+        }
+        flush(run, literals);
+        
+        return literals;
+    }
+    
+    /**
+     * Handles a quantifier that may follow the last character of the literal run.
+     * A quantifier that allows zero occurrences removes that character, any other
+     * quantifier ends the run after it.
+     * @return The index after the quantifier.
+     */
+    private static int quantify(String regex, int i, StringBuilder run, List<String> literals) {
+        if(i >= regex.length()) {
+            return i;
+        }
+        
+        char q = regex.charAt(i);
+        boolean optional;
+        if(q == '*' || q == '?') {
+            optional = true;
+        } else if(q == '+') {
+            optional = false;
+        } else if(q == '{' && regex.indexOf('}', i) > 0) {
+            optional = regex.charAt(i + 1) == '0' || regex.charAt(i + 1) == ',';
+        } else {
+            return i;
+        }
+        
+        if(optional && run.length() > 0) {
+            run.setLength(run.length() - 1);
+        }
+        flush(run, literals);
+        return skipQuantifier(regex, i);
+    }
+    
+    /**
+     * Skips the quantifier at the given index, if there is one.
+     * @return The index after the quantifier.
+     */
+    private static int skipQuantifier(String regex, int i) {
+        if(i >= regex.length()) {
+            return i;
+        }
+        
+        char q = regex.charAt(i);
+        if(q == '*' || q == '?' || q == '+') {
+            i++;
+        } else if(q == '{' && regex.indexOf('}', i) > 0) {
+            i = regex.indexOf('}', i) + 1;
+        } else {
+            return i;
+        }
+        
+        // Lazy and possessive quantifiers
+        if(i < regex.length() && (regex.charAt(i) == '?' || regex.charAt(i) == '+')) {
+            i++;
+        }
+        return i;
+    }
+    
+    /**
+     * Skips the escape that starts at the given index and of which the second
+     * character is a letter or digit, including its operands such as the digits
+     * of {@code \x41} or the name in {@code \p{Lu}}. The digits that follow a
+     * back reference are skipped too, since they may be part of its group number.
+     * @return The index after the escape.
+     */
+    private static int skipEscape(String regex, int i) {
+        char e = regex.charAt(i + 1);
+        int end = i + 2;
+        switch(e) {
+            case 'x':
+                end = end < regex.length() && regex.charAt(end) == '{' ? closing(regex, end, '}') : end + 2;
+                break;
+            case 'u':
+                end += 4;
+                break;
+            case 'c':
+                end += 1;
+                break;
+            case '0':
+                // \0n, \0nn or \0mnn with m <= 3
+                int max = end < regex.length() && regex.charAt(end) <= '3' ? 3 : 2;
+                while(end < regex.length() && end - i - 2 < max && regex.charAt(end) >= '0' && regex.charAt(end) <= '7') {
+                    end++;
+                }
+                break;
+            case 'p':
+            case 'P':
+                end = end < regex.length() && regex.charAt(end) == '{' ? closing(regex, end, '}') : end + 1;
+                break;
+            case 'k':
+                end = closing(regex, end, '>');
+                break;
+            case 'N':
+                end = closing(regex, end, '}');
+                break;
+            default:
+                if(e >= '1' && e <= '9') {
+                    while(end < regex.length() && Character.isDigit(regex.charAt(end))) {
+                        end++;
+                    }
+                }
+        }
+        return Math.min(end, regex.length());
+    }
+    
+    /**
+     * Returns the index after the first occurrence of the given character at or
+     * after the given index, or the length of the regex code if there is none.
+     */
+    private static int closing(String regex, int i, char c) {
+        int end = regex.indexOf(c, i);
+        return end < 0 ? regex.length() : end + 1;
+    }
+    
+    /**
+     * Skips the character class that starts at the given index.
+     * @return The index after the character class.
+     */
+    private static int skipClass(String regex, int i) {
+        int depth = 0;
+        for(; i < regex.length(); i++) {
+            char c = regex.charAt(i);
+            if(c == '\\') {
+                i++;
+            } else if(c == '[') {
+                depth++;
+                // A ] directly after the opening bracket (or after ^) is a literal
+                if(i + 1 < regex.length() && regex.charAt(i + 1) == '^') {
+                    i++;
+                }
+                if(i + 1 < regex.length() && regex.charAt(i + 1) == ']') {
+                    i++;
+                }
+            } else if(c == ']' && --depth == 0) {
+                return i + 1;
+            }
+        }
+        return i;
+    }
+    
+    /**
+     * Skips the group that starts at the given index.
+     * Alternatives inside the group do not matter, because the group as a whole
+     * contributes no literals.
+     * @return The index after the group, or -1 if the group is not closed.
+     */
+    private static int skipGroup(String regex, int i) {
+        int depth = 0;
+        for(; i < regex.length(); i++) {
+            char c = regex.charAt(i);
+            if(c == '\\') {
+                i++;
+            } else if(c == '[') {
+                i = skipClass(regex, i) - 1;
+            } else if(c == '(') {
+                depth++;
+            } else if(c == ')' && --depth == 0) {
+                return i + 1;
+            }
+        }
+        return -1;
+    }
+    
+    /**
+     * Adds the literal run to the list of literals if it is long enough to contain
+     * a trigram, and empties it.
+     */
+    private static void flush(StringBuilder run, List<String> literals) {
+        if(run.length() >= 3) {
+            literals.add(run.toString());
+        }
+        run.setLength(0);
+    }
+    
+    /**
+     * Packs the three characters starting at the given index into a {@code long}.
+     */
+    private static long trigram(CharSequence s, int i) {
+        return ((long) s.charAt(i) << 32) | ((long) s.charAt(i + 1) << 16) | s.charAt(i + 2);
+    }
+    
+    /**
+     * Returns the line numbers that occur in both sorted arrays.
+     */
+    private static int[] intersect(int[] a, int[] b) {
+        int[] result = new int[Math.min(a.length, b.length)];
+        int n = 0;
+        int i = 0;
+        int j = 0;
+        while(i < a.length && j < b.length) {
+            if(a[i] < b[j]) {
+                i++;
+            } else if(a[i] > b[j]) {
+                j++;
+            } else {
+                result[n++] = a[i];
+                i++;
+                j++;
+            }
+        }
+        return n == result.length ? result : Arrays.copyOf(result, n);
+    }
+    
+    private static void writeVarInt(DataOutputStream out, int value) throws IOException {
+        while((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+    
+    private static int readVarInt(DataInputStream in) throws IOException {
+        int value = 0;
+        for(int shift = 0; shift < 32; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+            if((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Damaged index file.");
+    }
+    
+    /**
+     * The line numbers of a single trigram while the index is being built.
+     */
+    private static final class Postings {
+        private int[] lines = new int[4];
+        private int size;
+        
+        /**
+         * Adds a line number, unless it was the last one that was added.
+         */
+        private void add(int line) {
+            if(size > 0 && lines[size - 1] == line) {
+                return;
+            }
+            if(size == lines.length) {
+                lines = Arrays.copyOf(lines, size * 2);
+            }
+            lines[size++] = line;
+        }
+        
+        private int[] toArray() {
+            return Arrays.copyOf(lines, size);
+        }
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright (C) 2018 Wessel Jelle Jongkind.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package cowlite.io.common;
+
+import java.io.File;
+
+/**
+ * Objects of this class describe the outcome of a wipe that was performed by
+ * {@link FileOverwriter#overwriteFileAsync(File, boolean)}.
+ *
+ * @version 2026-10-19 (yyyy-mm-dd)
+ */
+public class WipeResult
+{
+    /**
+     * The file that was overwritten.
+     */
+    private final File file;
+
+    /**
+     * The amount of bytes that were written to the file.
+     */
+    private final long bytesWritten;
+
+    /**
+     * {@code true} if the file was deleted after it was overwritten.
+     */
+    private final boolean deleted;
+
+    /**
+     * Instantiates a new {@code WipeResult} object.
+     * @param file The file that was overwritten.
+     * @param bytesWritten The amount of bytes that were written to the file.
+     * @param deleted {@code true} if the file was deleted after it was overwritten.
+     */
+    public WipeResult(File file, long bytesWritten, boolean deleted) {
+        this.file = file;
+        this.bytesWritten = bytesWritten;
+        this.deleted = deleted;
+    }
+
+    /**
+     * Returns the file that was overwritten.
+     * @return The file that was overwritten.
+     */
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * Returns the amount of bytes that were written to the file. Because files
+     * are overwritten in whole blocks, this may be larger than the original
+     * length of the file.
+     * @return The amount of bytes that were written to the file.
+     */
+    public long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    /**
+     * Returns {@code true} if the file was deleted after it was overwritten.
+     * @return {@code true} if the file was deleted after it was overwritten.
+     */
+    public boolean isDeleted() {
+        return deleted;
+    }
+}
@@ -0,0 +1,49 @@
+/* 
+ * Copyright (C) 2018 Wessel Jelle Jongkind.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package cowlite.io.util;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Receives the results of a search through multiple files. All methods are called
+ * from the thread that runs the search, so implementations do not have to be 
+ * thread-safe.
+ * 
+ * @version 2026-10-19 (yyyy-mm-dd)
+ */
+public interface GrepListener
+{
+    /**
+     * Receives a match that was found in a file.
+     * @param file The file in which the match was found.
+     * @param regex The regex code that was matched.
+     * @param match The match that was found.
+     */
+    void onMatch(Path file, String regex, Match match);
+    
+    /**
+     * Receives an error that occurred while a file was searched. The file is 
+     * skipped and searched again by the next search. By default, errors are ignored.
+     * @param file The file that could not be searched.
+     * @param e The error that occurred.
+     */
+    default void onError(Path file, IOException e) {
+    }
+}
@@ -0,0 +1,130 @@
+/* 
+ * Copyright (C) 2018 Wessel Jelle Jongkind.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package cowlite.io.util;
+
+/**
+ * Holds the {@code Metrics} that all classes of the library report their measurements
+ * to, and defines the names of those measurements. By default {@link Metrics#NOOP}
+ * is installed, which means that no measurements are taken until an application
+ * installs its own {@code Metrics}:
+ * 
+ * <pre><i>
+ *      IOMetrics.install(new Metrics() {
+ *          public void increment(String name, long amount) { registry.counter(name).inc(amount); }
+ *          public void recordTime(String name, long nanos) { registry.timer(name).update(nanos, TimeUnit.NANOSECONDS); }
+ *          public void recordValue(String name, long value) { registry.histogram(name).update(value); }
+ *      });
+ * </i></pre>
+ * 
+ * @version 2026-10-19 (yyyy-mm-dd)
+ */
+public final class IOMetrics
+{
+    /**
+     * Timer: the time {@code FileDataReader} spends reading a file into memory.
+     */
+    public static final String READER_READ_TIME = "cowlite.reader.read.time";
+    
+    /**
+     * Histogram: the amount of bytes in each file that {@code FileDataReader} reads.
+     */
+    public static final String READER_READ_BYTES = "cowlite.reader.read.bytes";
+    
+    /**
+     * Histogram: the amount of lines in each file that {@code FileDataReader} reads.
+     */
+    public static final String READER_READ_LINES = "cowlite.reader.read.lines";
+    
+    /**
+     * Timer: the time {@code FileDataReader} spends searching for regex matches.
+     */
+    public static final String READER_MATCH_TIME = "cowlite.reader.match.time";
+    
+    /**
+     * Counter: the amount of regex evaluations ({@code Matcher#find()} calls) that
+     * {@code FileDataReader} performs.
+     */
+    public static final String READER_MATCH_EVALUATIONS = "cowlite.reader.match.evaluations";
+    
+    /**
+     * Counter: the amount of regex matches that {@code FileDataReader} finds.
+     */
+    public static final String READER_MATCH_HITS = "cowlite.reader.match.hits";
+    
+    /**
+     * Timer: the time a {@code PathMonitor#update(List, List, List)} call takes.
+     */
+    public static final String MONITOR_UPDATE_TIME = "cowlite.monitor.update.time";
+    
+    /**
+     * Histogram: the amount of nodes visited by each {@code PathMonitor#update(List, List, List)} call.
+     */
+    public static final String MONITOR_UPDATE_NODES = "cowlite.monitor.update.nodes";
+    
+    /**
+     * Counter: the amount of file system calls (access checks, attribute reads
+     * and directory listings) issued by {@code PathMonitor}.
+     */
+    public static final String MONITOR_SYSCALLS = "cowlite.monitor.syscalls";
+    
+    /**
+     * Timer: the time {@code FileOverwriter} spends overwriting a file.
+     */
+    public static final String OVERWRITER_TIME = "cowlite.overwriter.time";
+    
+    /**
+     * Counter: the amount of bytes {@code FileOverwriter} has written.
+     */
+    public static final String OVERWRITER_BYTES = "cowlite.overwriter.bytes";
+    
+    /**
+     * Counter: the amount of bytes {@code FileDataWriter} has written.
+     */
+    public static final String WRITER_BYTES = "cowlite.writer.bytes";
+    
+    /**
+     * Timer: the time {@code FileDataWriter} spends forcing written data to the storage device.
+     */
+    public static final String WRITER_FORCE_TIME = "cowlite.writer.force.time";
+    
+    /**
+     * The {@code Metrics} to which all measurements are reported.
+     */
+    private static volatile Metrics metrics = Metrics.NOOP;
+    
+    private IOMetrics() {
+    }
+    
+    /**
+     * Installs the {@code Metrics} to which all measurements of the library are
+     * reported from now on.
+     * @param m The {@code Metrics} to install, or {@code null} to stop taking measurements.
+     */
+    public static void install(Metrics m) {
+        metrics = m == null ? Metrics.NOOP : m;
+    }
+    
+    /**
+     * Returns the {@code Metrics} to which all measurements are reported.
+     * @return The {@code Metrics} to which all measurements are reported.
+     */
+    public static Metrics get() {
+        return metrics;
+    }
+}
@@ -125,6 +125,114 @@ public class Match {
              }
          }
 
+         /**
+          * Instantiates a new {@code Match} object for a match that was found in
+          * a window of a larger text, in which lines are pasted together without
+          * a separator between them. Only the lines that overlap with the window
+          * have to be known.
+          * <p>
+          * Like {@link #Match(Matcher, int[])}, an index that lies exactly at the
+          * end of a line is regarded to be part of that line. Indices that lie 
+          * beyond the end of the last known line are regarded to be part of the
+          * line that follows it.
+          * 
+          * @param matcher The {@code Matcher} of which the current match should be
+          *                stored. Its indices are relative to the start of the window.
+          * @param offset The index of the first character of the window in the text.
+          * @param firstLine The number of the first line that overlaps with the window.
+          * @param firstLineStart The index in the text at which the first line starts.
+          * @param lineEnds The indices in the text at which the lines starting with 
+          *                 {@code firstLine} end.
+          * @param lineCount The amount of elements of {@code lineEnds} that are used.
+          * @see #Match(Matcher, int[]) 
+          */
+         public Match(Matcher matcher, long offset, int firstLine, long firstLineStart, long[] lineEnds, int lineCount) {
+             groups = new ArrayList<>();
+
+             for(int i = 0; i <= matcher.groupCount(); i++) {
+                 if(matcher.start(i) < 0) {
+                     groups.add(new Group(null, -1, -1, -1, -1));
+                     continue;
+                 }
+                 
+                 long start = offset + matcher.start(i);
+                 long end = offset + matcher.end(i);
+                 int startLine = getLineNumber(start, lineEnds, lineCount);
+                 int endLine = getLineNumber(end, lineEnds, lineCount);
+
+                 groups.add(new Group(matcher.group(i),
+                                      firstLine + startLine,
+                                      firstLine + endLine,
+                                      (int) (start - getLineStart(startLine, firstLineStart, lineEnds)),
+                                      (int) (end - getLineStart(endLine, firstLineStart, lineEnds))
+                 ));
+             }
+         }
+         
+         /**
+          * Instantiates a new {@code Match} object which is a copy of the given
+          * match, with the absolute byte offsets in the file at which the match and
+          * its groups start and end.
+          * 
+          * @param match The match to copy.
+          * @param startBytes The byte offsets at which the groups start, or -1 
+          *                   for groups of which the offset is not known.
+          * @param endBytes The byte offsets at which the groups end, or -1 for
+          *                 groups of which the offset is not known.
+          * @throws IllegalArgumentException When the amount of offsets does not
+          *                                  equal the amount of groups.
+          */
+         public Match(Match match, long[] startBytes, long[] endBytes) throws IllegalArgumentException {
+             if(startBytes.length != match.getGroupCount() || endBytes.length != match.getGroupCount()) {
+                 throw new IllegalArgumentException("Expected " + match.getGroupCount() + " offsets.");
+             }
+             
+             groups = new ArrayList<>();
+             for(int i = 0; i < match.getGroupCount(); i++) {
+                 Group g = match.group(i);
+                 groups.add(new Group(g.getMatch(),
+                                      g.getStartLine(),
+                                      g.getEndLine(),
+                                      g.getStartIndex(),
+                                      g.getEndIndex(),
+                                      startBytes[i],
+                                      endBytes[i]
+                 ));
+             }
+         }
+         
+         /**
+          * Obtains the index, relative to the first known line, of the line which
+          * contains the given index. 
+          * 
+          * @param i The index of which the line number should be obtained.
+          * @param lineEnds The indices at which the known lines end.
+          * @param lineCount The amount of known lines.
+          * @return The index of the line which contains the given index.
+          */
+         private int getLineNumber(long i, long[] lineEnds, int lineCount) {
+             int low = 0;
+             int high = lineCount;
+             while(low < high) {
+                 int mid = (low + high) >>> 1;
+                 if(lineEnds[mid] < i) {
+                     low = mid + 1;
+                 } else {
+                     high = mid;
+                 }
+             }
+             
+             return low;
+         }
+         
+         /**
+          * Returns the index at which the line with the given index, relative to
+          * the first known line, starts.
+          */
+         private long getLineStart(int line, long firstLineStart, long[] lineEnds) {
+             return line == 0 ? firstLineStart : lineEnds[line - 1];
+         }
+
          /**
           * Obtains the line number or list index which contains the given index.
           * 
@@ -177,6 +285,24 @@ public class Match {
              return groups.get(0).getEndIndex();
          }
 
+         /**
+          * Returns the absolute byte offset in the file at which the match starts,
+          * or -1 if it is not known.
+          * @return The byte offset at which the match starts, or -1 if it is not known.
+          */
+         public long getStartByte() {
+             return groups.get(0).getStartByte();
+         }
+
+         /**
+          * Returns the absolute byte offset in the file at which the match ends
+          * (exclusive), or -1 if it is not known.
+          * @return The byte offset at which the match ends, or -1 if it is not known.
+          */
+         public long getEndByte() {
+             return groups.get(0).getEndByte();
+         }
+
          /**
           * Returns the amount of groups in the match.
           * @return The amount of groups in the match.
@@ -242,6 +368,16 @@ public class Match {
               */
              private final String match;
 
+             /**
+              * The absolute byte offset in the file at which the matched group starts, or -1.
+              */
+             private final long startByte;
+
+             /**
+              * The absolute byte offset in the file at which the matched group ends, or -1.
+              */
+             private final long endByte;
+
              /**
               * Instantiates a new Group object.
               * 
@@ -252,11 +388,29 @@ public class Match {
               * @param endIndex The index of the character in the line at which the matched group ends.
               */
              public Group(String match, int startLine, int endLine, int startIndex, int endIndex) {
+                 this(match, startLine, endLine, startIndex, endIndex, -1, -1);
+             }
+
+             /**
+              * Instantiates a new Group object of which the absolute byte offsets
+              * in the file are known.
+              * 
+              * @param match The String that represents the group that was matched.
+              * @param startLine The line at which the matched group starts.
+              * @param endLine The line at which the matched group ends.
+              * @param startIndex The index of the character in the line at which the matched group starts.
+              * @param endIndex The index of the character in the line at which the matched group ends.
+              * @param startByte The byte offset in the file at which the matched group starts, or -1.
+              * @param endByte The byte offset in the file at which the matched group ends, or -1.
+              */
+             public Group(String match, int startLine, int endLine, int startIndex, int endIndex, long startByte, long endByte) {
                  this.startLine = startLine;
                  this.endLine = endLine;
                  this.startIndex = startIndex;
                  this.endIndex = endIndex;
                  this.match = match;
+                 this.startByte = startByte;
+                 this.endByte = endByte;
              }
 
              /**
@@ -302,5 +456,23 @@ public class Match {
              public String getMatch() {
                  return match;
              }
+
+             /**
+              * Returns the absolute byte offset in the file at which the matched group
+              * starts, or -1 if it is not known.
+              * @return The byte offset at which the matched group starts, or -1 if it is not known.
+              */
+             public long getStartByte() {
+                 return startByte;
+             }
+
+             /**
+              * Returns the absolute byte offset in the file at which the matched group
+              * ends (exclusive), or -1 if it is not known.
+              * @return The byte offset at which the matched group ends, or -1 if it is not known.
+              */
+             public long getEndByte() {
+                 return endByte;
+             }
          }
     }
\ No newline at end of file
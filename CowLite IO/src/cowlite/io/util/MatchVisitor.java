@@ -0,0 +1,37 @@
+/* 
+ * Copyright (C) 2018 Wessel Jelle Jongkind.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package cowlite.io.util;
+
+/**
+ * Receives the matches that are found in a file one at a time, as they are found.
+ * The visitor decides after every match whether the search should go on, so a 
+ * search can be stopped as soon as the matches that are needed have been found.
+ * 
+ * @version 2026-10-19 (yyyy-mm-dd)
+ */
+public interface MatchVisitor
+{
+    /**
+     * Visits a match that was found.
+     * @param match The match that was found.
+     * @return {@code true} if the search should continue, {@code false} if it 
+     *         should stop.
+     */
+    boolean visit(Match match);
+}
@@ -0,0 +1,92 @@
+/* 
+ * Copyright (C) 2018 Wessel Jelle Jongkind.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package cowlite.io.util;
+
+/**
+ * A sink for the measurements that are taken on the hot paths of the library,
+ * such as the time it takes to read a file or the amount of nodes that are visited
+ * when a directory tree is updated. Implementations forward these measurements to
+ * whatever metrics system the application uses.
+ * <p>
+ * Three kinds of measurements are reported: counters which only go up, timers
+ * which are reported in nanoseconds and values which are meant to be recorded in
+ * a histogram. The names of all measurements are defined in {@link IOMetrics}.
+ * <p>
+ * Implementations have to be thread-safe, as measurements are reported from any
+ * thread that uses the library.
+ * 
+ * @version 2026-10-19 (yyyy-mm-dd)
+ * @see IOMetrics#install(Metrics) 
+ */
+public interface Metrics
+{
+    /**
+     * The default {@code Metrics} which discards all measurements. When this
+     * instance is installed, no measurements are taken at all.
+     */
+    Metrics NOOP = new Metrics() {
+        @Override
+        public void increment(String name, long amount) {
+        }
+
+        @Override
+        public void recordTime(String name, long nanos) {
+        }
+
+        @Override
+        public void recordValue(String name, long value) {
+        }
+
+        @Override
+        public boolean isEnabled() {
+            return false;
+        }
+    };
+    
+    /**
+     * Increments the counter with the given name.
+     * @param name The name of the counter.
+     * @param amount The amount by which the counter is incremented.
+     */
+    void increment(String name, long amount);
+    
+    /**
+     * Records the duration of an operation in the timer with the given name.
+     * @param name The name of the timer.
+     * @param nanos The duration of the operation in nanoseconds.
+     */
+    void recordTime(String name, long nanos);
+    
+    /**
+     * Records a value in the histogram with the given name.
+     * @param name The name of the histogram.
+     * @param value The value to record.
+     */
+    void recordValue(String name, long value);
+    
+    /**
+     * Returns {@code true} if measurements should be taken at all. The library
+     * checks this before taking any measurement, so that a disabled {@code Metrics}
+     * does not cost anything.
+     * @return {@code true} if measurements should be taken.
+     */
+    default boolean isEnabled() {
+        return true;
+    }
+}